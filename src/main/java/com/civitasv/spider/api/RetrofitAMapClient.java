@@ -1,20 +1,46 @@
 package com.civitasv.spider.api;
 
+import com.civitasv.spider.api.interceptor.RecordingInterceptor;
+import com.civitasv.spider.api.interceptor.ReplayInterceptor;
 import com.civitasv.spider.api.service.AMapService;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Retrofit 高德地图API基类
+ * <p>
+ * 启动参数 -Dspider.http.record=文件 将请求与响应录制到该文件；
+ * -Dspider.http.replay=文件 从该文件回放响应，不发出网络请求，详见 {@link ReplayInterceptor}；
+ * -Dspider.amap.baseUrl 替换接口地址，例如指向基准测试中的模拟服务器
  */
+@Slf4j
 public class RetrofitAMapClient {
     private static RetrofitAMapClient instance;
     private static Retrofit retrofit;
-    private final static String BASE_URL = "https://restapi.amap.com/v3/";
+    public final static String BASE_URL_PROPERTY = "spider.amap.baseUrl";
+    private final static String BASE_URL = System.getProperty(BASE_URL_PROPERTY, "https://restapi.amap.com/v3/");
+    // 异步请求的最大并发数，所有请求均发往同一主机，因此单主机上限与总上限一致
+    private final static int MAX_ASYNC_REQUESTS = 512;
+    // 高德接口通常在数百毫秒内返回，卡住的连接应尽快失败并重试，而不是长期占用并发许可
+    private final static int CONNECT_TIMEOUT_SECONDS = 5;
+    private final static int READ_TIMEOUT_SECONDS = 10;
+    private final static int CALL_TIMEOUT_SECONDS = 15;
+    public final static String RECORD_PROPERTY = "spider.http.record";
+    public final static String REPLAY_PROPERTY = "spider.http.replay";
+    // 首次使用前添加的拦截器
+    private final static List<Interceptor> extraInterceptors = new ArrayList<>();
 
     public static synchronized RetrofitAMapClient getInstance() {
         if (instance == null)
@@ -22,17 +48,49 @@ public class RetrofitAMapClient {
         return instance;
     }
 
+    /**
+     * 添加拦截器，例如基准测试中统计请求耗时，需在首次调用 {@link #getInstance()} 前添加
+     */
+    public static synchronized void addInterceptor(Interceptor interceptor) {
+        if (instance != null) {
+            throw new IllegalStateException("RetrofitAMapClient 已初始化");
+        }
+        extraInterceptors.add(interceptor);
+    }
+
     private RetrofitAMapClient() {
         HttpLoggingInterceptor loggingInterceptor=new HttpLoggingInterceptor();
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC);
-        OkHttpClient okHttpClient = new OkHttpClient().newBuilder()
-                .connectTimeout(1, TimeUnit.DAYS)
-                .readTimeout(1, TimeUnit.DAYS)
-                .writeTimeout(1, TimeUnit.DAYS)
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_ASYNC_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_ASYNC_REQUESTS);
+        OkHttpClient.Builder builder = new OkHttpClient().newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(64, 5, TimeUnit.MINUTES))
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
                 .retryOnConnectionFailure(false)
-                .callTimeout(1, TimeUnit.DAYS)
-                .addInterceptor(loggingInterceptor)
-                .build();
+                .callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .addInterceptor(loggingInterceptor);
+        extraInterceptors.forEach(builder::addInterceptor);
+        String replay = System.getProperty(REPLAY_PROPERTY);
+        String record = System.getProperty(RECORD_PROPERTY);
+        if (replay != null) {
+            try {
+                builder.addInterceptor(ReplayInterceptor.fromSystemProperties(new File(replay)));
+            } catch (IOException e) {
+                // 回放模式下不能退回真实请求，否则会消耗 key 的额度
+                throw new IllegalStateException("回放存档读取失败：" + replay, e);
+            }
+        } else if (record != null) {
+            try {
+                builder.addInterceptor(new RecordingInterceptor(new File(record)));
+            } catch (IOException e) {
+                log.warn("录制存档无法创建，不录制请求：" + record, e);
+            }
+        }
+        OkHttpClient okHttpClient = builder.build();
         retrofit = new Retrofit.Builder()
                 .addConverterFactory(GsonConverterFactory.create())
                 .client(okHttpClient)
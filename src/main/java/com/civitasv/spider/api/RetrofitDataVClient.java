@@ -9,11 +9,14 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Retrofit DataV API 基类
+ * <p>
+ * -Dspider.datav.baseUrl 替换接口地址，例如指向基准测试中的模拟服务器
  */
 public class RetrofitDataVClient {
     private static RetrofitDataVClient instance;
     private static Retrofit retrofit;
-    private final static String BASE_URL = "https://geo.datav.aliyun.com/areas_v2/";
+    public final static String BASE_URL_PROPERTY = "spider.datav.baseUrl";
+    private final static String BASE_URL = System.getProperty(BASE_URL_PROPERTY, "https://geo.datav.aliyun.com/areas_v2/");
 
     public static synchronized RetrofitDataVClient getInstance() {
         if (instance == null)
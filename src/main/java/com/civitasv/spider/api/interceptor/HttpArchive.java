@@ -0,0 +1,111 @@
+package com.civitasv.spider.api.interceptor;
+
+import okhttp3.HttpUrl;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 请求/响应存档，供 {@link RecordingInterceptor} 写入、{@link ReplayInterceptor} 读取
+ * <p>
+ * 存档为 gzip 压缩的二进制文件，每条记录依次为：请求键、状态码、Content-Type、响应体；
+ * 每次打开以追加方式写入一个新的 gzip 分段，每条记录写入后立即刷新，进程异常退出时已写入的记录仍可读取
+ */
+public class HttpArchive {
+    /**
+     * 请求键：路径与按名称排序的查询参数，不含 key，不同 key 的相同请求对应同一条记录
+     */
+    public static String requestKey(HttpUrl url) {
+        StringBuilder requestKey = new StringBuilder(url.encodedPath()).append('?');
+        for (String name : new TreeSet<>(url.queryParameterNames())) {
+            if ("key".equals(name)) continue;
+            for (String value : url.queryParameterValues(name)) {
+                requestKey.append(name).append('=').append(value == null ? "" : value).append('&');
+            }
+        }
+        return requestKey.toString();
+    }
+
+    /**
+     * 读取存档
+     *
+     * @param file 存档文件
+     * @return 请求键与该请求录制的所有响应，按录制顺序排列
+     * @throws IOException 文件不存在或无法读取
+     */
+    public static Map<String, List<Entry>> read(File file) throws IOException {
+        Map<String, List<Entry>> entries = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            while (true) {
+                String requestKey;
+                Entry entry;
+                try {
+                    requestKey = new String(readBytes(in), StandardCharsets.UTF_8);
+                    entry = new Entry(in.readInt(), in.readUTF(), readBytes(in));
+                } catch (EOFException e) {
+                    // 文件结束，或进程异常退出时最后一条记录不完整
+                    break;
+                }
+                entries.computeIfAbsent(requestKey, k -> new ArrayList<>()).add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * 录制的一次响应
+     */
+    public static class Entry {
+        final int code;
+        final String contentType;
+        final byte[] body;
+
+        Entry(int code, String contentType, byte[] body) {
+            this.code = code;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 存档写入器，线程安全
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        /**
+         * @param file 存档文件，已存在时追加写入
+         * @throws IOException 文件无法创建或写入
+         */
+        public Writer(File file) throws IOException {
+            this.out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file, true), true));
+        }
+
+        public synchronized void write(String requestKey, int code, String contentType, byte[] body) throws IOException {
+            writeBytes(requestKey.getBytes(StandardCharsets.UTF_8));
+            out.writeInt(code);
+            out.writeUTF(contentType == null ? "" : contentType);
+            writeBytes(body);
+            out.flush();
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.civitasv.spider.api.interceptor;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 录制拦截器，将成功的请求/响应写入 {@link HttpArchive}，供 {@link ReplayInterceptor} 回放
+ * <p>
+ * 高德接口出错时 HTTP 状态码仍为 200，仅录制 infocode 为 10000 的响应，避免回放时将 QPS 超限等错误当作录制的结果；
+ * 不改变请求与响应，写入失败时仅打印异常
+ */
+@Slf4j
+public class RecordingInterceptor implements Interceptor {
+    // 单个响应体录制的最大字节数
+    private static final long MAX_BODY_BYTES = 16 * 1024 * 1024;
+
+    private final HttpArchive.Writer writer;
+
+    /**
+     * @param file 存档文件，已存在时追加写入，进程退出时关闭
+     * @throws IOException 文件无法创建或写入
+     */
+    public RecordingInterceptor(File file) throws IOException {
+        this.writer = new HttpArchive.Writer(file);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("录制存档关闭失败", e);
+            }
+        }));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        if (response.isSuccessful()) {
+            try {
+                ResponseBody body = response.peekBody(MAX_BODY_BYTES);
+                MediaType contentType = body.contentType();
+                byte[] bytes = body.bytes();
+                if (isSuccessBody(bytes)) {
+                    writer.write(HttpArchive.requestKey(chain.request().url()), response.code(),
+                            contentType == null ? null : contentType.toString(), bytes);
+                }
+            } catch (IOException e) {
+                log.warn("响应录制失败", e);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * 响应体是否为 infocode 为 10000 的高德 json
+     */
+    private static boolean isSuccessBody(byte[] body) {
+        try {
+            JsonElement json = new JsonParser().parse(new String(body, StandardCharsets.UTF_8));
+            if (!json.isJsonObject()) {
+                return false;
+            }
+            JsonElement infoCode = json.getAsJsonObject().get("infocode");
+            return infoCode != null && infoCode.isJsonPrimitive() && "10000".equals(infoCode.getAsString());
+        } catch (JsonParseException e) {
+            return false;
+        }
+    }
+}
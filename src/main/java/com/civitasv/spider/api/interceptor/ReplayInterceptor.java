@@ -0,0 +1,144 @@
+package com.civitasv.spider.api.interceptor;
+
+import okhttp3.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 回放拦截器，从 {@link HttpArchive} 中读取录制的响应返回，不发出网络请求，不消耗 key 的额度
+ * <p>
+ * 可模拟网络延迟并按比例注入错误，用于在无网络的机器上稳定地测量切分、调度、入库与导出的性能：
+ * <ul>
+ *     <li>-Dspider.replay.latencyMillis：每个请求的基础延迟，默认 0</li>
+ *     <li>-Dspider.replay.jitterMillis：在基础延迟上随机增加的最大延迟，默认 0</li>
+ *     <li>-Dspider.replay.errorRate：返回高德 QPS 超限错误（10020）的比例，默认 0</li>
+ *     <li>-Dspider.replay.failureRate：模拟网络异常的比例，默认 0</li>
+ * </ul>
+ * 同一请求录制了多次时依次轮流返回；未录制的请求返回 404；
+ * 测量性能时应同时设置 -Dspider.cacheTtlHours=0 关闭响应缓存，否则重复的请求不经过拦截器
+ */
+public class ReplayInterceptor implements Interceptor {
+    public static final String LATENCY_PROPERTY = "spider.replay.latencyMillis";
+    public static final String JITTER_PROPERTY = "spider.replay.jitterMillis";
+    public static final String ERROR_RATE_PROPERTY = "spider.replay.errorRate";
+    public static final String FAILURE_RATE_PROPERTY = "spider.replay.failureRate";
+
+    private static final MediaType JSON = MediaType.parse("application/json;charset=UTF-8");
+    private static final byte[] QPS_EXCEEDED_BODY =
+            "{\"status\":\"0\",\"info\":\"CKQPS_HAS_EXCEEDED_THE_LIMIT\",\"infocode\":\"10020\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOT_RECORDED_BODY =
+            "{\"status\":\"0\",\"info\":\"NOT_RECORDED\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Recorded> archive = new HashMap<>();
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double failureRate;
+
+    /**
+     * @param file          存档文件
+     * @param latencyMillis 每个请求的基础延迟
+     * @param jitterMillis  在基础延迟上随机增加的最大延迟
+     * @param errorRate     返回 QPS 超限错误的比例
+     * @param failureRate   模拟网络异常的比例
+     * @throws IOException 存档无法读取
+     */
+    public ReplayInterceptor(File file, long latencyMillis, long jitterMillis, double errorRate, double failureRate) throws IOException {
+        if (latencyMillis < 0 || jitterMillis < 0 || errorRate < 0 || failureRate < 0 || errorRate + failureRate > 1) {
+            throw new IllegalArgumentException("回放参数设置有误");
+        }
+        for (Map.Entry<String, List<HttpArchive.Entry>> entry : HttpArchive.read(file).entrySet()) {
+            archive.put(entry.getKey(), new Recorded(entry.getValue()));
+        }
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * 使用启动参数中的延迟与错误比例创建
+     */
+    public static ReplayInterceptor fromSystemProperties(File file) throws IOException {
+        return new ReplayInterceptor(file,
+                Long.getLong(LATENCY_PROPERTY, 0), Long.getLong(JITTER_PROPERTY, 0),
+                doubleProperty(ERROR_RATE_PROPERTY), doubleProperty(FAILURE_RATE_PROPERTY));
+    }
+
+    private static double doubleProperty(String name) {
+        String value = System.getProperty(name);
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+    /**
+     * 已录制的请求数目
+     */
+    public int size() {
+        return archive.size();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Canceled", e);
+            }
+        }
+        if (chain.call().isCanceled()) {
+            throw new IOException("Canceled");
+        }
+        double dice = random.nextDouble();
+        if (dice < failureRate) {
+            throw new IOException("回放模拟的网络异常");
+        }
+        if (dice < failureRate + errorRate) {
+            return response(request, 200, "OK", JSON, QPS_EXCEEDED_BODY);
+        }
+        Recorded recorded = archive.get(HttpArchive.requestKey(request.url()));
+        if (recorded == null) {
+            return response(request, 404, "Not Recorded", JSON, NOT_RECORDED_BODY);
+        }
+        HttpArchive.Entry entry = recorded.next();
+        MediaType contentType = entry.contentType.isEmpty() ? null : MediaType.parse(entry.contentType);
+        return response(request, entry.code, "OK", contentType, entry.body);
+    }
+
+    private static Response response(Request request, int code, String message, MediaType contentType, byte[] body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(message)
+                .body(ResponseBody.create(body, contentType))
+                .build();
+    }
+
+    /**
+     * 同一请求录制的所有响应，轮流返回
+     */
+    private static class Recorded {
+        private final List<HttpArchive.Entry> entries;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Recorded(List<HttpArchive.Entry> entries) {
+            this.entries = entries;
+        }
+
+        HttpArchive.Entry next() {
+            return entries.get(Math.floorMod(next.getAndIncrement(), entries.size()));
+        }
+    }
+}
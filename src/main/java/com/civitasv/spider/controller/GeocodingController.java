@@ -48,7 +48,9 @@ public class GeocodingController extends BaseController {
     private ExecutorService worker, executorService;
     private MyProgressBar progressBar;
     private boolean start = false;
-    private int perExecuteTime;
+    // 每个 key 的 QPS 与同时进行的请求数，地址逐行提交为单独的任务，由二者控制请求速率
+    private RateLimiter rateLimiter;
+    private ConcurrencyLimiter concurrencyLimiter;
 
     public void show() throws IOException {
         init();
@@ -77,7 +79,7 @@ public class GeocodingController extends BaseController {
             analysis(true);
 
             appendMessage("读取高德key中");
-            Queue<String> keys = new ArrayDeque<>(Arrays.asList(this.keys.getText().split(",")));
+            KeyPool keys = new KeyPool(Arrays.asList(this.keys.getText().split(",")), CircuitBreaker.GEOCODING_ENDPOINT);
             appendMessage("高德key读取成功");
 
             appendMessage("读取线程数目中");
@@ -109,7 +111,8 @@ public class GeocodingController extends BaseController {
                 threadNum = val;
                 appendMessage("设置线程数目为" + threadNum);
             }
-            perExecuteTime = getPerExecuteTime(threadNum, qps, keys.size());
+            rateLimiter = new RateLimiter(qps);
+            concurrencyLimiter = new ConcurrencyLimiter(threadNum, threadNum);
 
             // 解析输入文件
             appendMessage("解析输入文件中");
@@ -142,18 +145,6 @@ public class GeocodingController extends BaseController {
         });
     }
 
-    /**
-     * 根据线程数、key数目和QPS设置每次运行时间
-     *
-     * @param threadNum 线程数目
-     * @param qps       用户qps
-     * @param keysNum   key数量
-     * @return 每次运行时间 ms
-     */
-    private int getPerExecuteTime(int threadNum, int qps, int keysNum) {
-        return (int) (1000 * (threadNum * 1.0 / (qps * keysNum)));
-    }
-
     /**
      * 选择文件
      */
@@ -180,65 +171,56 @@ public class GeocodingController extends BaseController {
             outputDirectory.setText(file.getAbsolutePath());
     }
 
-    private void saveToCsvOrTxt(@NotNull List<Map<String, String>> parseRes, String outputFormat, int threadNum, Queue<String> amapKeys) {
-        // 创建工作线程执行保存文件工作
-        executorService = Executors.newFixedThreadPool(threadNum);
+    private void saveToCsvOrTxt(@NotNull List<Map<String, String>> parseRes, String outputFormat, int threadNum, KeyPool amapKeys) {
         // 创建线程池执行解析工作
-        job:
-        for (int i = 0; start && i < parseRes.size(); i += threadNum) {
-            List<Callable<Geocodes.Response>> call = new ArrayList<>();
-            for (int j = 0; j < threadNum && i + j < parseRes.size(); j++) {
-                Map<String, String> item = parseRes.get(i + j);
-                if (item.containsKey("address") && item.containsKey("city")) {
-                    call.add(() -> geocode(item.get("address"), item.get("city"), amapKeys));
-                } else if (item.containsKey("address")) {
-                    call.add(() -> geocode(item.get("address"), "", amapKeys));
+        executorService = ExecutorUtils.newWorkerPool(threadNum);
+        List<Future<Geocodes.Response>> futures = submitAll(parseRes, amapKeys);
+        try {
+            for (int i = 0; start && i < futures.size(); i++) {
+                Future<Geocodes.Response> future = futures.get(i);
+                if (future == null) {
+                    continue;
                 }
-            }
-            try {
-                List<Future<Geocodes.Response>> futures = executorService.invokeAll(call);
-                for (int j = 0; j < futures.size(); j++) {
-                    Future<Geocodes.Response> future = futures.get(j);
-                    Geocodes.Response response = future.get();
-                    if (response == null) {
-                        break job;
-                    }
-                    Map<String, String> item = parseRes.get(i + j);
-                    // 更新解析进度
-                    int finalI = i, finalJ = j;
-                    Platform.runLater(() -> progressBar.show(finalI + finalJ));
-                    item.put("status", response.getStatus().toString());
-                    item.put("info", response.getInfo());
-                    item.put("infocode", response.getInfocode());
-                    Geocodes.Info[] infos = response.getGeocodes();
-                    for (int k = 0; k < infos.length; k++) {
-                        Geocodes.Info info = infos[k];
-                        item.put("formatted_address_" + k, info.formattedAddress);
-                        item.put("country_" + k, info.country);
-                        item.put("province_" + k, info.province);
-                        item.put("city_" + k, info.city != null ? info.city.toString() : "");
-                        item.put("citycode_" + k, info.cityCode);
-                        item.put("district_" + k, info.district != null ? info.district.toString() : "");
-                        item.put("adcode_" + k, info.adCode != null ? info.adCode : "");
-                        item.put("street_" + k, info.street != null ? info.street.toString() : "");
-                        item.put("number_" + k, info.number != null ? info.number.toString() : "");
-                        item.put("level_" + k, info.level);
-                        String[] lonlat = info.location.split(",");
-                        if (lonlat.length == 2) {
-                            item.put("gcj02_lon_" + k, lonlat[0]);
-                            item.put("gcj02_lat_" + k, lonlat[1]);
-                            double[] wgs84 = CoordinateTransformUtil.transformGCJ02ToWGS84(Double.parseDouble(lonlat[0]), Double.parseDouble(lonlat[1]));
-                            item.put("wgs84_lon_" + k, String.valueOf(wgs84[0]));
-                            item.put("wgs84_lat_" + k, String.valueOf(wgs84[1]));
-                        }
+                Geocodes.Response response = future.get();
+                if (response == null) {
+                    break;
+                }
+                Map<String, String> item = parseRes.get(i);
+                // 更新解析进度
+                int finalI = i;
+                Platform.runLater(() -> progressBar.show(finalI));
+                item.put("status", response.getStatus().toString());
+                item.put("info", response.getInfo());
+                item.put("infocode", response.getInfocode());
+                Geocodes.Info[] infos = response.getGeocodes();
+                for (int k = 0; k < infos.length; k++) {
+                    Geocodes.Info info = infos[k];
+                    item.put("formatted_address_" + k, info.formattedAddress);
+                    item.put("country_" + k, info.country);
+                    item.put("province_" + k, info.province);
+                    item.put("city_" + k, info.city != null ? info.city.toString() : "");
+                    item.put("citycode_" + k, info.cityCode);
+                    item.put("district_" + k, info.district != null ? info.district.toString() : "");
+                    item.put("adcode_" + k, info.adCode != null ? info.adCode : "");
+                    item.put("street_" + k, info.street != null ? info.street.toString() : "");
+                    item.put("number_" + k, info.number != null ? info.number.toString() : "");
+                    item.put("level_" + k, info.level);
+                    String[] lonlat = info.location.split(",");
+                    if (lonlat.length == 2) {
+                        item.put("gcj02_lon_" + k, lonlat[0]);
+                        item.put("gcj02_lat_" + k, lonlat[1]);
+                        double[] wgs84 = CoordinateTransformUtil.transformGCJ02ToWGS84(Double.parseDouble(lonlat[0]), Double.parseDouble(lonlat[1]));
+                        item.put("wgs84_lon_" + k, String.valueOf(wgs84[0]));
+                        item.put("wgs84_lat_" + k, String.valueOf(wgs84[1]));
                     }
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
-                appendMessage("爬取线程已中断");
             }
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            e.printStackTrace();
+            appendMessage("爬取线程已中断");
         }
-        executorService.shutdown();
+        // 取消剩余的请求，例如key池耗尽后
+        executorService.shutdownNow();
         if (!start) return;
         List<String> keys = new ArrayList<>(parseRes.get(0).keySet());
         File file = FileUtil.getNewFile(outputDirectory.getText() + "\\解析结果_" + FileUtil.getFileName(inputFile.getText()) + "." + outputFormat);
@@ -276,77 +258,62 @@ public class GeocodingController extends BaseController {
         }
     }
 
-    private void saveToJson(@NotNull List<Map<String, String>> parseRes, int threadNum, Queue<String> amapKeys) {
-        // 创建工作线程执行保存文件工作
-        executorService = Executors.newFixedThreadPool(threadNum);
+    private void saveToJson(@NotNull List<Map<String, String>> parseRes, int threadNum, KeyPool amapKeys) {
         // 创建线程池执行解析工作
+        executorService = ExecutorUtils.newWorkerPool(threadNum);
+        List<Future<Geocodes.Response>> futures = submitAll(parseRes, amapKeys);
         JsonArray jsonArray = new JsonArray();
-        job:
-        for (int i = 0; i < parseRes.size(); i += threadNum) {
-            List<Callable<Geocodes.Response>> call = new ArrayList<>();
-            for (int j = 0; j < threadNum && (i + j) < parseRes.size(); j++) {
-                Map<String, String> item = parseRes.get(i + j);
-                if (item.containsKey("address") && item.containsKey("city")) {
-                    call.add(() -> geocode(item.get("address"), item.get("city"), amapKeys));
-                } else if (item.containsKey("address")) {
-                    call.add(() -> geocode(item.get("address"), "", amapKeys));
+        try {
+            for (int i = 0; start && i < futures.size(); i++) {
+                Future<Geocodes.Response> future = futures.get(i);
+                if (future == null) {
+                    continue;
                 }
-            }
-            try {
-                long startTime = System.currentTimeMillis();   //获取开始时间
-                List<Future<Geocodes.Response>> futures = executorService.invokeAll(call);
-                long endTime = System.currentTimeMillis(); //获取结束时间
-                if (endTime - startTime < perExecuteTime) { // 严格控制每次执行perExecuteTime
-                    TimeUnit.MILLISECONDS.sleep(perExecuteTime - (endTime - startTime));
+                Geocodes.Response response = future.get();
+                if (response == null) {
+                    break;
                 }
-                for (int j = 0; j < futures.size(); j++) {
-                    Future<Geocodes.Response> future = futures.get(j);
-                    Geocodes.Response response = future.get();
-                    if (response == null) {
-                        break job;
-                    }
-                    JsonObject jsonObject = new JsonObject();
-                    Map<String, String> item = parseRes.get(i + j);
-                    item.forEach(jsonObject::addProperty);
-                    // 更新解析进度
-                    int finalI = i, finalJ = j;
-                    Platform.runLater(() -> progressBar.show(finalI + finalJ));
-                    jsonObject.addProperty("status", response.getStatus().toString());
-                    jsonObject.addProperty("info", response.getInfo());
-                    jsonObject.addProperty("infocode", response.getInfocode());
-                    JsonArray infoArray = new JsonArray();
-                    Geocodes.Info[] infos = response.getGeocodes();
-                    for (Geocodes.Info info : infos) {
-                        JsonObject jsonItem = new JsonObject();
-                        jsonItem.addProperty("formatted_address", info.formattedAddress);
-                        jsonItem.addProperty("country", info.country);
-                        jsonItem.addProperty("province", info.province);
-                        jsonItem.addProperty("city", info.city != null ? info.city.toString() : "");
-                        jsonItem.addProperty("citycode", info.cityCode);
-                        jsonItem.addProperty("district", info.district != null ? info.district.toString() : "");
-                        jsonItem.addProperty("adcode", info.adCode);
-                        jsonItem.addProperty("street", info.street != null ? info.street.toString() : "");
-                        jsonItem.addProperty("number", info.number != null ? info.number.toString() : "");
-                        jsonItem.addProperty("level", info.level);
-                        String[] lonlat = info.location.split(",");
-                        if (lonlat.length == 2) {
-                            jsonItem.addProperty("gcj02_lon", lonlat[0]);
-                            jsonItem.addProperty("gcj02_lat", lonlat[1]);
-                            double[] wgs84 = CoordinateTransformUtil.transformGCJ02ToWGS84(Double.parseDouble(lonlat[0]), Double.parseDouble(lonlat[1]));
-                            jsonItem.addProperty("wgs84_lon", wgs84[0]);
-                            jsonItem.addProperty("wgs84_lat", wgs84[1]);
-                        }
-                        infoArray.add(jsonItem);
+                JsonObject jsonObject = new JsonObject();
+                Map<String, String> item = parseRes.get(i);
+                item.forEach(jsonObject::addProperty);
+                // 更新解析进度
+                int finalI = i;
+                Platform.runLater(() -> progressBar.show(finalI));
+                jsonObject.addProperty("status", response.getStatus().toString());
+                jsonObject.addProperty("info", response.getInfo());
+                jsonObject.addProperty("infocode", response.getInfocode());
+                JsonArray infoArray = new JsonArray();
+                Geocodes.Info[] infos = response.getGeocodes();
+                for (Geocodes.Info info : infos) {
+                    JsonObject jsonItem = new JsonObject();
+                    jsonItem.addProperty("formatted_address", info.formattedAddress);
+                    jsonItem.addProperty("country", info.country);
+                    jsonItem.addProperty("province", info.province);
+                    jsonItem.addProperty("city", info.city != null ? info.city.toString() : "");
+                    jsonItem.addProperty("citycode", info.cityCode);
+                    jsonItem.addProperty("district", info.district != null ? info.district.toString() : "");
+                    jsonItem.addProperty("adcode", info.adCode);
+                    jsonItem.addProperty("street", info.street != null ? info.street.toString() : "");
+                    jsonItem.addProperty("number", info.number != null ? info.number.toString() : "");
+                    jsonItem.addProperty("level", info.level);
+                    String[] lonlat = info.location.split(",");
+                    if (lonlat.length == 2) {
+                        jsonItem.addProperty("gcj02_lon", lonlat[0]);
+                        jsonItem.addProperty("gcj02_lat", lonlat[1]);
+                        double[] wgs84 = CoordinateTransformUtil.transformGCJ02ToWGS84(Double.parseDouble(lonlat[0]), Double.parseDouble(lonlat[1]));
+                        jsonItem.addProperty("wgs84_lon", wgs84[0]);
+                        jsonItem.addProperty("wgs84_lat", wgs84[1]);
                     }
-                    jsonObject.add("res", infoArray);
-                    jsonArray.add(jsonObject);
+                    infoArray.add(jsonItem);
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
-                appendMessage("爬取线程已中断");
+                jsonObject.add("res", infoArray);
+                jsonArray.add(jsonObject);
             }
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            e.printStackTrace();
+            appendMessage("爬取线程已中断");
         }
-        executorService.shutdown();
+        executorService.shutdownNow();
         String json = jsonArray.toString();
         File jsonFile = FileUtil.getNewFile(outputDirectory.getText() + "\\解析结果_" + FileUtil.getFileName(inputFile.getText()) + ".json");
         if (jsonFile == null) {
@@ -363,6 +330,24 @@ public class GeocodingController extends BaseController {
         }
     }
 
+    /**
+     * 每行地址提交为单独的任务，使用虚拟线程时每行各占一个线程；请求速率由限流器控制，不再按线程数分批等待
+     *
+     * @return 与输入行一一对应的结果，不含地址的行为 null
+     */
+    private List<Future<Geocodes.Response>> submitAll(List<Map<String, String>> parseRes, KeyPool amapKeys) {
+        List<Future<Geocodes.Response>> futures = new ArrayList<>();
+        for (Map<String, String> item : parseRes) {
+            if (!item.containsKey("address")) {
+                futures.add(null);
+                continue;
+            }
+            String city = item.containsKey("city") ? item.get("city") : "";
+            futures.add(executorService.submit(() -> geocode(item.get("address"), city, amapKeys)));
+        }
+        return futures;
+    }
+
     private void analysis(boolean isAnalysis) {
         Platform.runLater(() -> {
             execute.setDisable(isAnalysis);
@@ -428,83 +413,96 @@ public class GeocodingController extends BaseController {
         Platform.runLater(() -> messageDetail.appendText(text + "\r\n"));
     }
 
-    private synchronized String getKey(Queue<String> keys) {
-        if (keys.isEmpty()) {
-            return null;
+    /**
+     * 使用指定key请求地理编码，并记录该key的耗时与结果；先等待该key的令牌，再占用并发许可
+     *
+     * @throws InterruptedException 等待令牌或并发许可时任务被停止
+     */
+    private Geocodes.Response geocoding(KeyPool keys, String key, String address, String city) throws InterruptedException {
+        rateLimiter.acquire(key);
+        concurrencyLimiter.acquire();
+        try {
+            long begin = keys.begin(key);
+            Geocodes.Response response = aMapDao.geocoding(key, address, city);
+            keys.end(key, begin, isSuccess(response));
+            return response;
+        } finally {
+            concurrencyLimiter.release();
         }
-        String key = keys.poll();
-        keys.offer(key);
-        return key;
     }
 
-    private Geocodes.Response geocode(String address, String city, Queue<String> keys) {
-        if (!start) return null;
-        String key = getKey(keys);
-        if (key == null) {
-            appendMessage("key池已耗尽，无法继续获取POI...");
-            return null;
-        }
-        Geocodes.Response response = aMapDao.geocoding(key, address, city);
-        if (start && (response == null || !"10000".equals(response.getInfocode()))) {
-            synchronized (this) {
-                if (keys.contains(key)) {
-                    if (response == null) {
-                        // 如果返回null，重试
-                        appendMessage("数据获取失败，正在重试中...");
-                        for (int i = 0; i < 3; i++) {
-                            appendMessage("重试第" + (i + 1) + "次...");
-                            response = aMapDao.geocoding(key, address, city);
-                            if (response != null && "10000".equals(response.getInfocode())) {
-                                appendMessage("数据获取成功，继续爬取...");
-                                return response;
-                            }
-                        }
-                    }
-                    if (response == null) {
-                        appendMessage("数据获取失败");
-                        appendMessage("错误数据---" + address + "--" + city);
-                    } else {
-                        if ("10001".equals(response.getInfocode())) {
-                            appendMessage("key----" + key + "已经过期");
-                        } else if ("10003".equals(response.getInfocode())) {
-                            appendMessage("key----" + key + "已达调用量上限");
-                        } else {
-                            appendMessage("错误代码：" + response.getInfocode() + "详细信息：" + response.getInfo());
-                        }
-                    }
-                    // 去除过期的，使用其它key重新访问
-                    keys.remove(key);
-                }
-                while (!keys.isEmpty()) {
-                    appendMessage("正在尝试其它key");
-                    key = getKey(keys);
-                    appendMessage("切换key：" + key);
-                    response = aMapDao.geocoding(key, address, city);
+    private boolean isSuccess(Geocodes.Response response) {
+        return response != null && "10000".equals(response.getInfocode());
+    }
 
-                    if (response == null) {
-                        // 如果返回null，重试
-                        appendMessage("数据获取失败，正在重试中...");
-                        for (int i = 0; i < 3; i++) {
-                            appendMessage("重试第" + (i + 1) + "次...");
-                            response = aMapDao.geocoding(key, address, city);
-                            if (response != null && "10000".equals(response.getInfocode())) {
-                                appendMessage("数据获取成功，继续爬取...");
-                                return response;
-                            }
-                        }
-                    }
-                    keys.remove(key);
-                    if (response == null) {
-                        appendMessage("数据获取失败");
-                        appendMessage("错误数据---" + address + "--" + city);
-                        continue;
+    private Geocodes.Response geocode(String address, String city, KeyPool keys) throws InterruptedException {
+        String key;
+        while (start && (key = keys.select()) != null) {
+            Geocodes.Response response = geocoding(keys, key, address, city);
+            if (isSuccess(response)) {
+                return response;
+            }
+            if (response == null && !keys.isAvailable(key)) {
+                // key 被熔断，请求未发出：保留该 key，换用其它 key；所有 key 均被熔断时等待熔断恢复
+                if (!keys.hasAvailableExcept(key) && !awaitBreaker()) {
+                    return null;
+                }
+                continue;
+            }
+            if (response == null) {
+                // 如果返回null，重试
+                appendMessage("数据获取失败，正在重试中...");
+                for (int i = 0; i < 3 && start && keys.isAvailable(key); i++) {
+                    appendMessage("重试第" + (i + 1) + "次...");
+                    response = geocoding(keys, key, address, city);
+                    if (isSuccess(response)) {
+                        appendMessage("数据获取成功，继续爬取...");
+                        return response;
                     }
-                    appendMessage("错误代码：" + response.getInfocode() + "详细信息：" + response.getInfo());
                 }
-                appendMessage("key池已耗尽，无法继续获取POI...");
+                if (response == null && !keys.isAvailable(key)) {
+                    continue;
+                }
+            }
+            if (!start) {
                 return null;
             }
+            // 去除过期的，使用其它key重新访问；多个线程同时移除同一key时，仅移除成功的一方输出错误信息
+            if (keys.remove(key)) {
+                if (response == null) {
+                    appendMessage("数据获取失败");
+                    appendMessage("错误数据---" + address + "--" + city);
+                } else if ("10001".equals(response.getInfocode())) {
+                    appendMessage("key----" + key + "已经过期");
+                } else if ("10003".equals(response.getInfocode())) {
+                    appendMessage("key----" + key + "已达调用量上限");
+                } else {
+                    appendMessage("错误代码：" + response.getInfocode() + "详细信息：" + response.getInfo());
+                }
+                appendMessage(keys.stats(key));
+            }
+            if (!keys.isEmpty()) {
+                appendMessage("正在尝试其它key");
+            }
+        }
+        if (start) {
+            appendMessage("key池已耗尽，无法继续获取POI...");
+        }
+        return null;
+    }
+
+    /**
+     * 所有 key 均被熔断时，等待一段时间后再选择 key
+     *
+     * @return 是否继续，停止任务时返回 false
+     */
+    private boolean awaitBreaker() {
+        try {
+            TimeUnit.SECONDS.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        return (response != null && "10000".equals(response.getInfocode())) ? response : null;
+        return start;
     }
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import javafx.scene.control.*;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
 import java.awt.*;
@@ -41,6 +42,7 @@ import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+@Slf4j
 public class POIController extends BaseController {
     public TextField threadNum; // 线程数目
     public TextField keywords; // 关键字
@@ -361,6 +363,20 @@ public class POIController extends BaseController {
         }
     }
 
+    /**
+     * key 额度重置后，自动继续上一未完成任务
+     */
+    public void resumeLastTask() {
+        try {
+            Task task = handleLastTask(true);
+            if (task != null) {
+                poiViewModel.execute(task);
+            }
+        } catch (TryAgainException | NoTryAgainException | IOException e) {
+            log.warn("自动继续上次任务失败", e);
+        }
+    }
+
     public void cancel() {
         poiViewModel.cancel();
     }
@@ -13,6 +13,8 @@ public enum TryAgainErrorCode {
     RETURN_NULL_DATA(80001, "网络请求返回为null", "请求参数错误"),
     TIME_OUT(80002, "请求超时", "请重新尝试"),
     TRY_OTHER_KEY(80003, "其中一个key无效", "重新尝试其他key"),
+    UNEXPECTED_ERROR(80004, "处理请求时出现异常", "请重新尝试"),
+    SHARED_REQUEST_FAILED(80005, "合并的相同请求未成功", "重新发出请求"),
 
     CQPS_HAS_EXCEEDED_THE_LIMIT(10019, "使用的某个服务总QPS超限", "QPS超出限制，超出部分的请求被拒绝。限流阈值内的请求依旧会正常返回"),
     CKQPS_HAS_EXCEEDED_THE_LIMIT(10020, "某个Key使用某个服务接口QPS超出限制", "QPS超出限制，超出部分的请求被拒绝。限流阈值内的请求依旧会正常返回"),
@@ -0,0 +1,22 @@
+package com.civitasv.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.civitasv.spider.model.po.GridPriorPo;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * <p>
+ * Mapper 接口
+ * </p>
+ */
+public interface GridPriorMapper extends BaseMapper<GridPriorPo> {
+    @Update("create table if not exists grid_prior (ID integer primary key autoincrement, REGION text not null, " +
+            "TYPES text, KEYWORDS text, BOUNDARY text not null, POI_COUNT integer not null)")
+    void createTableIfNotExists();
+
+    /**
+     * 按区域、类型和关键字查询与替换历史格网时使用
+     */
+    @Update("create index if not exists grid_prior_region_index on grid_prior (REGION, TYPES, KEYWORDS)")
+    void createRegionIndexIfNotExists();
+}
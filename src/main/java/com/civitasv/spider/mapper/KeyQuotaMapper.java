@@ -0,0 +1,43 @@
+package com.civitasv.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.civitasv.spider.model.po.KeyQuotaPo;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Mapper 接口
+ * </p>
+ */
+public interface KeyQuotaMapper extends BaseMapper<KeyQuotaPo> {
+    @Update("create table if not exists key_quota (ID integer primary key autoincrement, AMAP_KEY text not null, " +
+            "QUOTA_DATE text not null, USED_COUNT integer not null default 0, EXHAUSTED_AT text, " +
+            "unique (AMAP_KEY, QUOTA_DATE))")
+    void createTableIfNotExists();
+
+    /**
+     * 累加 key 当日的调用量
+     */
+    @Insert("insert into key_quota (AMAP_KEY, QUOTA_DATE, USED_COUNT) values (#{key}, #{date}, #{count}) " +
+            "on conflict (AMAP_KEY, QUOTA_DATE) do update set USED_COUNT = USED_COUNT + excluded.USED_COUNT")
+    int addUsage(@Param("key") String key, @Param("date") String date, @Param("count") int count);
+
+    /**
+     * 记录 key 当日额度用完的时间，已记录时保留首次记录的时间
+     */
+    @Insert("insert into key_quota (AMAP_KEY, QUOTA_DATE, USED_COUNT, EXHAUSTED_AT) values (#{key}, #{date}, 0, #{time}) " +
+            "on conflict (AMAP_KEY, QUOTA_DATE) do update set EXHAUSTED_AT = coalesce(EXHAUSTED_AT, excluded.EXHAUSTED_AT)")
+    int markExhausted(@Param("key") String key, @Param("date") String date, @Param("time") String time);
+
+    /**
+     * 每个 key 最近一次用完额度当天的调用量，即该 key 的实际每日额度
+     */
+    @Select("select k.* from key_quota k where k.EXHAUSTED_AT is not null and k.USED_COUNT > 0 and k.QUOTA_DATE = " +
+            "(select max(QUOTA_DATE) from key_quota where AMAP_KEY = k.AMAP_KEY and EXHAUSTED_AT is not null and USED_COUNT > 0)")
+    List<KeyQuotaPo> listLatestExhausted();
+}
@@ -2,8 +2,14 @@ package com.civitasv.spider.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.civitasv.spider.model.po.PoiPo;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p>
  * Mapper 接口
@@ -15,4 +21,26 @@ import org.apache.ibatis.annotations.Update;
 public interface PoiMapper extends BaseMapper<PoiPo> {
     @Update("delete from poi; update sqlite_sequence set seq = 0 where name = 'poi';")
     void truncate();
+
+    @Update("create unique index if not exists poi_poi_id_uindex on poi (POI_ID)")
+    void createPoiIdUniqueIndex();
+
+    /**
+     * 插入poi，POI_ID 已存在时忽略
+     */
+    @Insert("insert or ignore into poi (JOB_ID, POI_ID, NAME, TYPE, TYPE_CODE, BIZ_TYPE, ADDRESS, LOCATION, TEL, " +
+            "PROVINCE_NAME, CITY_NAME, AD_NAME, POST_CODE, WEBSITE, EMAIL, PROVINCE_CODE, CITY_CODE, AD_CODE, PHOTOS) " +
+            "values (#{jobId}, #{poiId}, #{name}, #{type}, #{typeCode}, #{bizType}, #{address}, #{location}, #{tel}, " +
+            "#{provinceName}, #{cityName}, #{adName}, #{postCode}, #{website}, #{email}, #{provinceCode}, #{cityCode}, #{adCode}, #{photos})")
+    int insertOrIgnore(PoiPo poiPo);
+
+    /**
+     * 按主键分页读取已保存的 POI_ID，每页从上一页最后的 ID 之后开始
+     *
+     * @param lastId 上一页最后的 ID，第一页为 0
+     * @param limit  每页数量
+     * @return 每行包含 ID 与 POI_ID
+     */
+    @Select("select ID, POI_ID from poi where ID > #{lastId} and POI_ID is not null order by ID limit #{limit}")
+    List<Map<String, Object>> selectPoiIdsAfter(@Param("lastId") long lastId, @Param("limit") int limit);
 }
@@ -0,0 +1,24 @@
+package com.civitasv.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.civitasv.spider.model.po.ResponseCachePo;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * <p>
+ * Mapper 接口
+ * </p>
+ */
+public interface ResponseCacheMapper extends BaseMapper<ResponseCachePo> {
+    @Update("create table if not exists response_cache (CACHE_KEY text primary key, ENDPOINT text not null, " +
+            "BODY blob not null, CREATED_AT integer not null)")
+    void createTableIfNotExists();
+
+    /**
+     * 写入缓存，已存在时覆盖
+     */
+    @Insert("insert or replace into response_cache (CACHE_KEY, ENDPOINT, BODY, CREATED_AT) " +
+            "values (#{cacheKey}, #{endpoint}, #{body}, #{createdAt})")
+    int insertOrReplace(ResponseCachePo responseCachePo);
+}
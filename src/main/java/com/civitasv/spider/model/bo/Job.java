@@ -36,6 +36,17 @@ public class Job {
     private POI poi;
     private TryAgainErrorCode tryAgainErrorCode;
     private NoTryAgainErrorCode noTryAgainErrorCode;
+    // 仅用于切分时探测格网内的poi数量，不持久化
+    private boolean probe = false;
+    // 所属查询组的类型和关键字，按类型拆分后的job仍属于原查询组，用于记录历史格网，不持久化
+    private String groupTypes;
+    private String groupKeywords;
+    // 按各key剩余额度预先分配的key，不持久化
+    private String plannedKey;
+    // 空间切分前父格网的poi数量，用于判断继续切分能否降低数量，不持久化
+    private Integer parentCount;
+    // 本轮爬取中已重试的次数，不持久化
+    private int retryTimes = 0;
 
     public JobPo toJobPo() {
         return new JobPo(
@@ -4,6 +4,7 @@ import com.civitasv.spider.helper.Enum.*;
 import com.civitasv.spider.model.po.TaskPo;
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 import java.util.*;
 import java.util.function.Predicate;
@@ -33,6 +34,9 @@ public class Task {
     private BoundaryType boundaryType;
     private String boundaryConfig;
     private Double[] boundary;
+    // 任务的实际边界，不持久化，矩形边界时为 null
+    @ToString.Exclude
+    private PreparedGeometry boundaryGeometry;
     private Predicate<? super POI.Info> filter;
     private List<Job> jobs;
 
@@ -0,0 +1,71 @@
+package com.civitasv.spider.model.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * 历史格网，记录某区域在指定 POI 类型和关键字下最终切分得到的格网及其 POI 数量
+ * </p>
+ * 同一区域再次爬取时，直接以历史格网作为切分起点，省去逐层探测的请求
+ */
+@Getter
+@Setter
+@ToString
+@Accessors(fluent = true)
+@RequiredArgsConstructor
+@TableName("grid_prior")
+public class GridPriorPo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 唯一 ID，自增主键
+     */
+    @TableId(value = "ID", type = IdType.AUTO)
+    private final Long id;
+
+    /**
+     * 区域，即 Task 的边界配置
+     */
+    @TableField("REGION")
+    private final String region;
+
+    /**
+     * POI 类型
+     */
+    @TableField("TYPES")
+    private final String types;
+
+    /**
+     * POI 关键字
+     */
+    @TableField("KEYWORDS")
+    private final String keywords;
+
+    /**
+     * 左下（经纬度），右上（经纬度）
+     * <p>
+     * 例如：110.360476,31.383448,116.65032,36.365931
+     */
+    @TableField("BOUNDARY")
+    private final String boundary;
+
+    /**
+     * 上次爬取时该格网的 POI 数量
+     */
+    @TableField("POI_COUNT")
+    private final Integer poiCount;
+
+    public Double[] bounds() {
+        return Arrays.stream(boundary.split(","))
+                .map(Double::valueOf)
+                .toArray(Double[]::new);
+    }
+}
@@ -0,0 +1,56 @@
+package com.civitasv.spider.model.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * key 额度台账，记录每个 key 每天的调用量及额度用完的时间
+ * </p>
+ * 日期按北京时间计算，与高德每日重置额度的时间一致
+ */
+@Getter
+@Setter
+@ToString
+@Accessors(fluent = true)
+@RequiredArgsConstructor
+@TableName("key_quota")
+public class KeyQuotaPo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 唯一 ID，自增主键
+     */
+    @TableId(value = "ID", type = IdType.AUTO)
+    private final Long id;
+
+    /**
+     * 高德 key
+     */
+    @TableField("AMAP_KEY")
+    private final String amapKey;
+
+    /**
+     * 日期，例如：2022-05-01
+     */
+    @TableField("QUOTA_DATE")
+    private final String quotaDate;
+
+    /**
+     * 当日调用量
+     */
+    @TableField("USED_COUNT")
+    private final Integer usedCount;
+
+    /**
+     * 当日额度用完的时间，额度未用完时为 null
+     */
+    @TableField("EXHAUSTED_AT")
+    private final String exhaustedAt;
+}
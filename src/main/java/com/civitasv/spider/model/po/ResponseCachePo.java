@@ -0,0 +1,50 @@
+package com.civitasv.spider.model.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * 高德接口响应缓存，以去除 key 后的请求参数为键，保存 gzip 压缩的响应体
+ * </p>
+ * 在有效期内重复爬取同一区域时直接读取缓存，不消耗 key 的额度
+ */
+@Getter
+@Setter
+@ToString(exclude = "body")
+@Accessors(fluent = true)
+@RequiredArgsConstructor
+@TableName("response_cache")
+public class ResponseCachePo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 请求参数的摘要
+     */
+    @TableId(value = "CACHE_KEY", type = IdType.INPUT)
+    private final String cacheKey;
+
+    /**
+     * 接口，例如：place/polygon
+     */
+    @TableField("ENDPOINT")
+    private final String endpoint;
+
+    /**
+     * gzip 压缩的响应体
+     */
+    @TableField("BODY")
+    private final byte[] body;
+
+    /**
+     * 缓存时间，毫秒时间戳
+     */
+    @TableField("CREATED_AT")
+    private final Long createdAt;
+}
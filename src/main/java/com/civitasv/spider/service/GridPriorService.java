@@ -0,0 +1,19 @@
+package com.civitasv.spider.service;
+
+import com.civitasv.spider.model.po.GridPriorPo;
+
+import java.util.List;
+
+/**
+ * <p>
+ * 服务类
+ * </p>
+ */
+public interface GridPriorService {
+    List<GridPriorPo> list(String region, String types, String keywords);
+
+    /**
+     * 使用本次切分结果替换该区域的历史格网
+     */
+    boolean replace(String region, String types, String keywords, List<GridPriorPo> gridPriorPos);
+}
@@ -0,0 +1,34 @@
+package com.civitasv.spider.service;
+
+import com.civitasv.spider.model.po.KeyQuotaPo;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 服务类
+ * </p>
+ */
+public interface KeyQuotaService {
+    /**
+     * 指定日期所有 key 的调用记录
+     */
+    List<KeyQuotaPo> list(LocalDate date);
+
+    /**
+     * 累加各 key 在指定日期的调用量
+     */
+    void addUsage(LocalDate date, Map<String, Integer> usage);
+
+    /**
+     * 记录 key 在指定日期额度用完
+     */
+    void markExhausted(String key, LocalDate date);
+
+    /**
+     * 根据历史上额度用完当天的调用量，得到各 key 的实际每日额度
+     */
+    Map<String, Integer> learnedDailyQuota();
+}
@@ -21,4 +21,12 @@ public interface PoiCategoryService extends IService<PoiCategory> {
     List<String> getPoiCategorySub(String big, String mid);
 
     String getPoiCategoryId(String big, String mid, String sub);
+
+    /**
+     * 获取 POI 类型编码的下一级类型编码
+     *
+     * @param cateId 类型编码，为空时返回所有大类
+     * @return 下一级类型编码，小类或无法识别的编码返回空列表
+     */
+    List<String> getPoiCategoryChildren(String cateId);
 }
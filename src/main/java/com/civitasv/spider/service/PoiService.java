@@ -20,4 +20,16 @@ public interface PoiService {
     boolean saveBatch(List<PoiPo> poiPos);
 
     int updateById(PoiPo poiPo);
+
+    /**
+     * 使用内存中的 POI_ID 集合精确去重，默认模式
+     */
+    void useExactDedup();
+
+    /**
+     * 使用布隆过滤器去重，内存占用与 poi 数量无关，可能重复的 poi 再查询数据库确认，适用于省级、全国范围的任务
+     *
+     * @param expectedInsertions 预计的 poi 数量
+     */
+    void useBloomFilterDedup(long expectedInsertions);
 }
@@ -0,0 +1,37 @@
+package com.civitasv.spider.service;
+
+import com.civitasv.spider.model.po.ResponseCachePo;
+
+/**
+ * <p>
+ * 服务类
+ * </p>
+ */
+public interface ResponseCacheService {
+    /**
+     * 读取缓存
+     *
+     * @param cacheKey  请求参数的摘要
+     * @param notBefore 早于该时间（毫秒时间戳）的缓存视为过期
+     * @return 缓存，不存在或已过期时返回 null
+     */
+    ResponseCachePo get(String cacheKey, long notBefore);
+
+    /**
+     * 写入缓存，写入先暂存在内存中，累积一定数量后由后台线程批量写入数据库，不阻塞调用线程
+     */
+    void put(ResponseCachePo responseCachePo);
+
+    /**
+     * 将暂存的缓存写入数据库，等待写入完成
+     */
+    void flush();
+
+    /**
+     * 删除过期的缓存
+     *
+     * @param before 早于该时间（毫秒时间戳）的缓存被删除
+     * @return 删除的数量
+     */
+    int deleteExpired(long before);
+}
@@ -0,0 +1,53 @@
+package com.civitasv.spider.service.serviceImpl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.civitasv.spider.mapper.GridPriorMapper;
+import com.civitasv.spider.model.po.GridPriorPo;
+import com.civitasv.spider.service.GridPriorService;
+import com.civitasv.spider.util.MyBatisUtils;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.util.List;
+
+/**
+ * <p>
+ * 服务实现类
+ * </p>
+ */
+public class GridPriorServiceImpl implements GridPriorService {
+    @Override
+    public List<GridPriorPo> list(String region, String types, String keywords) {
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(true)) {
+            GridPriorMapper gridPriorMapper = session.getMapper(GridPriorMapper.class);
+            return gridPriorMapper.selectList(regionWrapper(region, types, keywords));
+        }
+    }
+
+    @Override
+    public boolean replace(String region, String types, String keywords, List<GridPriorPo> gridPriorPos) {
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(ExecutorType.BATCH, false)) {
+            GridPriorMapper gridPriorMapper = session.getMapper(GridPriorMapper.class);
+            gridPriorMapper.delete(regionWrapper(region, types, keywords));
+            for (int i = 0; i < gridPriorPos.size(); i++) {
+                gridPriorMapper.insert(gridPriorPos.get(i));
+                if ((i + 1) % 1000 == 0 || i + 1 == gridPriorPos.size()) {
+                    session.flushStatements();
+                }
+            }
+            session.commit();
+            return true;
+        }
+    }
+
+    private QueryWrapper<GridPriorPo> regionWrapper(String region, String types, String keywords) {
+        QueryWrapper<GridPriorPo> wrapper = new QueryWrapper<>();
+        wrapper.eq("REGION", region);
+        wrapper.eq("TYPES", types);
+        wrapper.eq("KEYWORDS", keywords);
+        return wrapper;
+    }
+}
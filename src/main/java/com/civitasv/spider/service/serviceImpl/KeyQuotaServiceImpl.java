@@ -0,0 +1,70 @@
+package com.civitasv.spider.service.serviceImpl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.civitasv.spider.mapper.KeyQuotaMapper;
+import com.civitasv.spider.model.po.KeyQuotaPo;
+import com.civitasv.spider.service.KeyQuotaService;
+import com.civitasv.spider.util.KeyPool;
+import com.civitasv.spider.util.MyBatisUtils;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 服务实现类
+ * </p>
+ */
+public class KeyQuotaServiceImpl implements KeyQuotaService {
+    @Override
+    public List<KeyQuotaPo> list(LocalDate date) {
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(true)) {
+            KeyQuotaMapper keyQuotaMapper = session.getMapper(KeyQuotaMapper.class);
+            QueryWrapper<KeyQuotaPo> wrapper = new QueryWrapper<>();
+            wrapper.eq("QUOTA_DATE", date.toString());
+            return keyQuotaMapper.selectList(wrapper);
+        }
+    }
+
+    @Override
+    public synchronized void addUsage(LocalDate date, Map<String, Integer> usage) {
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(false)) {
+            KeyQuotaMapper keyQuotaMapper = session.getMapper(KeyQuotaMapper.class);
+            usage.forEach((key, count) -> {
+                if (count > 0) keyQuotaMapper.addUsage(key, date.toString(), count);
+            });
+            session.commit();
+        }
+    }
+
+    @Override
+    public synchronized void markExhausted(String key, LocalDate date) {
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(true)) {
+            KeyQuotaMapper keyQuotaMapper = session.getMapper(KeyQuotaMapper.class);
+            keyQuotaMapper.markExhausted(key, date.toString(),
+                    LocalDateTime.now(KeyPool.QUOTA_ZONE).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+    }
+
+    @Override
+    public Map<String, Integer> learnedDailyQuota() {
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(true)) {
+            KeyQuotaMapper keyQuotaMapper = session.getMapper(KeyQuotaMapper.class);
+            Map<String, Integer> quota = new HashMap<>();
+            for (KeyQuotaPo keyQuotaPo : keyQuotaMapper.listLatestExhausted()) {
+                quota.put(keyQuotaPo.amapKey(), keyQuotaPo.usedCount());
+            }
+            return quota;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.civitasv.spider.util.MyBatisUtils;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -71,4 +72,40 @@ public class PoiCategoryServiceImpl extends ServiceImpl<PoiCategoryMapper, PoiCa
             return poiCategoryMapper.selectOne(wrapper).cateId();
         }
     }
+
+    @Override
+    public List<String> getPoiCategoryChildren(String cateId) {
+        String prefix, suffix;
+        int prefixLength;
+        if (cateId == null || cateId.isEmpty()) {
+            prefix = "";
+            prefixLength = 2;
+            suffix = "0000";
+        } else if (!cateId.matches("\\d{6}")) {
+            return Collections.emptyList();
+        } else if (cateId.endsWith("0000")) {
+            // 大类
+            prefix = cateId.substring(0, 2);
+            prefixLength = 4;
+            suffix = "00";
+        } else if (cateId.endsWith("00")) {
+            // 中类
+            prefix = cateId.substring(0, 4);
+            prefixLength = 6;
+            suffix = "";
+        } else {
+            return Collections.emptyList();
+        }
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(true)) {
+            PoiCategoryMapper poiCategoryMapper = session.getMapper(PoiCategoryMapper.class);
+            QueryWrapper<PoiCategory> wrapper = new QueryWrapper<>();
+            wrapper.select("DISTINCT substr(CATE_ID, 1," + prefixLength + ") as CATE_ID")
+                    .likeRight("CATE_ID", prefix);
+            return poiCategoryMapper.selectList(wrapper).stream()
+                    .map(poiCategory -> poiCategory.cateId() + suffix)
+                    .filter(child -> !child.equals(cateId))
+                    .collect(Collectors.toList());
+        }
+    }
 }
@@ -4,12 +4,20 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.civitasv.spider.mapper.PoiMapper;
 import com.civitasv.spider.model.po.PoiPo;
 import com.civitasv.spider.service.PoiService;
+import com.civitasv.spider.util.BloomFilter;
 import com.civitasv.spider.util.MyBatisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -19,14 +27,58 @@ import java.util.List;
  * @author zhanghang
  * @since 2022-04-06 09:08:52
  */
+@Slf4j
 public class PoiServiceImpl implements PoiService {
+    // 已保存的 POI_ID，相邻格网边界上的、多个查询组或重试重复获取的poi在写入前剔除，数据库唯一索引兜底
+    private final Set<String> savedPoiIds = new HashSet<>();
+    private boolean savedPoiIdsLoaded = false;
+    // 布隆过滤器去重模式，为 null 时使用 savedPoiIds 精确去重
+    private BloomFilter bloomFilter;
+    private static final double BLOOM_FILTER_FPP = 0.01;
+    // 每次从数据库加载的 POI_ID 数量
+    private static final int LOAD_PAGE_SIZE = 100000;
+    private final int loadPageSize;
+    // 确认可能重复的 poi 时，单条 in 查询的参数数量，低于 SQLite 的参数上限
+    private static final int CONFIRM_CHUNK_SIZE = 500;
+
+    public PoiServiceImpl() {
+        this(LOAD_PAGE_SIZE);
+    }
+
+    /**
+     * @param loadPageSize 继续上次任务时，每次从数据库加载的 POI_ID 数量
+     */
+    PoiServiceImpl(int loadPageSize) {
+        this.loadPageSize = loadPageSize;
+    }
+
     @Override
-    public void clearTable() {
+    public synchronized void clearTable() {
         SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
         try (SqlSession session = defaultMyBatis.openSession(true)) {
             PoiMapper poiMapper = session.getMapper(PoiMapper.class);
             poiMapper.truncate();
+            poiMapper.createPoiIdUniqueIndex();
+        }
+        savedPoiIds.clear();
+        if (bloomFilter != null) bloomFilter.clear();
+        savedPoiIdsLoaded = true;
+    }
+
+    @Override
+    public synchronized void useExactDedup() {
+        if (bloomFilter == null) {
+            return;
         }
+        bloomFilter = null;
+        savedPoiIdsLoaded = false;
+    }
+
+    @Override
+    public synchronized void useBloomFilterDedup(long expectedInsertions) {
+        bloomFilter = new BloomFilter(expectedInsertions, BLOOM_FILTER_FPP);
+        savedPoiIds.clear();
+        savedPoiIdsLoaded = false;
     }
 
     @Override
@@ -39,13 +91,19 @@ public class PoiServiceImpl implements PoiService {
     }
 
     @Override
-    public boolean saveBatch(List<PoiPo> poiPos) {
+    public synchronized boolean saveBatch(List<PoiPo> poiPos) {
+        loadSavedPoiIds();
+        poiPos = bloomFilter == null
+                ? poiPos.stream()
+                .filter(poiPo -> poiPo.poiId() == null || savedPoiIds.add(poiPo.poiId()))
+                .collect(Collectors.toList())
+                : filterByBloomFilter(poiPos);
         SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
         try (SqlSession session = defaultMyBatis.openSession(ExecutorType.BATCH, false)) {
             PoiMapper poiMapper = session.getMapper(PoiMapper.class);
             for (int i = 0; i < poiPos.size(); i++) {
                 PoiPo poiPo = poiPos.get(i);
-                poiMapper.insert(poiPo);
+                poiMapper.insertOrIgnore(poiPo);
                 if ((i + 1) % 1000 == 0 || i + 1 == poiPos.size()) {
                     session.flushStatements();
                 }
@@ -63,4 +121,79 @@ public class PoiServiceImpl implements PoiService {
             return poiMapper.updateById(poiPo);
         }
     }
+
+    /**
+     * 继续上次任务时，从数据库加载已保存的 POI_ID
+     */
+    private void loadSavedPoiIds() {
+        if (savedPoiIdsLoaded) {
+            return;
+        }
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(true)) {
+            PoiMapper poiMapper = session.getMapper(PoiMapper.class);
+            try {
+                poiMapper.createPoiIdUniqueIndex();
+            } catch (PersistenceException e) {
+                // 旧数据中已存在重复的 POI_ID 时无法建立唯一索引，仅依靠内存去重
+                log.warn("POI_ID 唯一索引建立失败，仅在内存中去重", e);
+            }
+            // 按主键分页，每页从上一页最后的 ID 之后开始，避免 offset 逐页扫描已跳过的行
+            long lastId = 0;
+            while (true) {
+                List<Map<String, Object>> rows = poiMapper.selectPoiIdsAfter(lastId, loadPageSize);
+                for (Map<String, Object> row : rows) {
+                    String poiId = row.get("POI_ID").toString();
+                    if (bloomFilter == null) savedPoiIds.add(poiId);
+                    else bloomFilter.put(poiId);
+                }
+                if (rows.size() < loadPageSize) break;
+                lastId = ((Number) rows.get(rows.size() - 1).get("ID")).longValue();
+            }
+        }
+        savedPoiIdsLoaded = true;
+    }
+
+    /**
+     * 使用布隆过滤器剔除重复的poi，布隆过滤器判定可能重复的poi查询数据库确认
+     */
+    private List<PoiPo> filterByBloomFilter(List<PoiPo> poiPos) {
+        Set<String> batchPoiIds = new HashSet<>();
+        List<PoiPo> result = new ArrayList<>();
+        List<PoiPo> probableDuplicates = new ArrayList<>();
+        for (PoiPo poiPo : poiPos) {
+            if (poiPo.poiId() == null) {
+                result.add(poiPo);
+            } else if (!batchPoiIds.add(poiPo.poiId())) {
+                // 同一批次内重复
+            } else if (bloomFilter.put(poiPo.poiId())) {
+                result.add(poiPo);
+            } else {
+                probableDuplicates.add(poiPo);
+            }
+        }
+        if (probableDuplicates.isEmpty()) {
+            return result;
+        }
+        Set<String> existingPoiIds = new HashSet<>();
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(true)) {
+            PoiMapper poiMapper = session.getMapper(PoiMapper.class);
+            for (int i = 0; i < probableDuplicates.size(); i += CONFIRM_CHUNK_SIZE) {
+                List<String> poiIds = probableDuplicates.subList(i, Math.min(i + CONFIRM_CHUNK_SIZE, probableDuplicates.size()))
+                        .stream().map(PoiPo::poiId).collect(Collectors.toList());
+                QueryWrapper<PoiPo> wrapper = new QueryWrapper<>();
+                wrapper.select("POI_ID").in("POI_ID", poiIds);
+                for (Object poiId : poiMapper.selectObjs(wrapper)) {
+                    existingPoiIds.add(poiId.toString());
+                }
+            }
+        }
+        for (PoiPo poiPo : probableDuplicates) {
+            if (!existingPoiIds.contains(poiPo.poiId())) {
+                result.add(poiPo);
+            }
+        }
+        return result;
+    }
 }
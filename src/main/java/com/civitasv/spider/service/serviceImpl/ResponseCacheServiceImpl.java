@@ -0,0 +1,123 @@
+package com.civitasv.spider.service.serviceImpl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.civitasv.spider.mapper.ResponseCacheMapper;
+import com.civitasv.spider.model.po.ResponseCachePo;
+import com.civitasv.spider.service.ResponseCacheService;
+import com.civitasv.spider.util.MyBatisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * 服务实现类
+ * </p>
+ * 写入与删除由单个后台线程依次执行，调用线程（包括 OkHttp 的回调线程）不等待数据库；
+ * 读取不加锁，尚未写入数据库的缓存直接从内存返回
+ */
+@Slf4j
+public class ResponseCacheServiceImpl implements ResponseCacheService {
+    // 累积多少条缓存后批量写入
+    private static final int FLUSH_SIZE = 100;
+
+    // 尚未写入数据库的缓存，写入完成后才移除，保证写入期间仍可读取
+    private final Map<String, ResponseCachePo> pending = new ConcurrentHashMap<>();
+    // 是否已提交了尚未执行的批量写入
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "response-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public ResponseCachePo get(String cacheKey, long notBefore) {
+        ResponseCachePo cached = pending.get(cacheKey);
+        if (cached == null) {
+            SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+            try (SqlSession session = defaultMyBatis.openSession(true)) {
+                ResponseCacheMapper responseCacheMapper = session.getMapper(ResponseCacheMapper.class);
+                QueryWrapper<ResponseCachePo> wrapper = new QueryWrapper<>();
+                wrapper.eq("CACHE_KEY", cacheKey);
+                cached = responseCacheMapper.selectOne(wrapper);
+            }
+        }
+        return cached == null || cached.createdAt() < notBefore ? null : cached;
+    }
+
+    @Override
+    public void put(ResponseCachePo responseCachePo) {
+        pending.put(responseCachePo.cacheKey(), responseCachePo);
+        if (pending.size() >= FLUSH_SIZE && flushScheduled.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                flushScheduled.set(false);
+                try {
+                    writePending();
+                } catch (RuntimeException e) {
+                    log.warn("响应缓存写入失败", e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void flush() {
+        await(writer.submit(this::writePending));
+    }
+
+    @Override
+    public int deleteExpired(long before) {
+        return await(writer.submit(() -> {
+            SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+            try (SqlSession session = defaultMyBatis.openSession(true)) {
+                ResponseCacheMapper responseCacheMapper = session.getMapper(ResponseCacheMapper.class);
+                QueryWrapper<ResponseCachePo> wrapper = new QueryWrapper<>();
+                wrapper.lt("CREATED_AT", before);
+                return responseCacheMapper.delete(wrapper);
+            }
+        }));
+    }
+
+    /**
+     * 在写入线程中批量写入暂存的缓存
+     */
+    private void writePending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<ResponseCachePo> responseCachePos = new ArrayList<>(pending.values());
+        SqlSessionFactory defaultMyBatis = MyBatisUtils.getDefaultMybatisPlus();
+        try (SqlSession session = defaultMyBatis.openSession(ExecutorType.BATCH, false)) {
+            ResponseCacheMapper responseCacheMapper = session.getMapper(ResponseCacheMapper.class);
+            for (ResponseCachePo responseCachePo : responseCachePos) {
+                responseCacheMapper.insertOrReplace(responseCachePo);
+            }
+            session.flushStatements();
+            session.commit();
+        }
+        for (ResponseCachePo responseCachePo : responseCachePos) {
+            // 写入期间被更新的缓存留待下次写入
+            pending.remove(responseCachePo.cacheKey(), responseCachePo);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("等待缓存写入时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+}
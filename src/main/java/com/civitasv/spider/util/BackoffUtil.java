@@ -0,0 +1,20 @@
+package com.civitasv.spider.util;
+
+/**
+ * 失败请求重试前的退避时间
+ */
+public class BackoffUtil {
+    /**
+     * 指数退避并加入随机抖动：退避时间随重试次数翻倍直至上限，实际等待其一半到全部之间的随机时长，避免失败的请求同时重试
+     *
+     * @param baseMillis 首次重试的基准时间，毫秒
+     * @param maxMillis  退避时间的上限，毫秒
+     * @param retryTimes 已重试的次数
+     * @param random     [0, 1) 之间的随机数
+     * @return 退避时间，毫秒
+     */
+    public static long delayMillis(long baseMillis, long maxMillis, int retryTimes, double random) {
+        long delay = Math.min(maxMillis, baseMillis << Math.min(retryTimes, 16));
+        return delay / 2 + (long) (random * (delay / 2 + 1));
+    }
+}
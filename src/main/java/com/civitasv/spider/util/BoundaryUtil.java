@@ -4,14 +4,22 @@ import com.civitasv.spider.helper.Enum.CoordinateType;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class BoundaryUtil {
     private final static GeometryFactory geometryFactory = new GeometryFactory();
+    // 多边形占外接矩形面积的比例低于该值时，使用粗格网覆盖
+    private final static double MIN_FILL_RATIO = 0.5;
+    // 多边形部分超过该数量时（如沿海城市的大量岛屿），不再按部分生成初始格网，改用整体外接矩形的粗格网
+    private final static int MAX_SEED_PARTS = 32;
 
     /**
      * 获取 DataV 返回的 GeoJSON 格式数据边界
@@ -104,4 +112,72 @@ public class BoundaryUtil {
         }
         return null;
     }
+
+    /**
+     * 根据边界数组构造矩形
+     * @param bounds 边界数组，[左下角经度, 左下角纬度, 右上角经度, 右上角纬度]
+     * @return 矩形 Geometry
+     */
+    public static Geometry getGeometryByBounds(Double[] bounds) {
+        return geometryFactory.toGeometry(new Envelope(bounds[0], bounds[2], bounds[1], bounds[3]));
+    }
+
+    /**
+     * 生成覆盖实际边界的初始格网，代替单个外接矩形作为切分起点
+     * <p>
+     * 每个多边形部分使用各自的外接矩形，部分之间的外接矩形相交或部分数量过多时退化为整体外接矩形；
+     * 多边形占外接矩形面积比例较低时，再将其划分为 gridSize * gridSize 的格网，仅保留与边界相交的格网
+     *
+     * @param boundary 实际边界
+     * @param gridSize 粗格网的行列数
+     * @return 初始格网，[左下角经度, 左下角纬度, 右上角经度, 右上角纬度]
+     */
+    public static List<Double[]> getInitialTiles(Geometry boundary, int gridSize) {
+        List<Envelope> envelopes = new ArrayList<>();
+        List<Double> areas = new ArrayList<>();
+        // 部分过多时两两检查相交的开销和初始格网的数量都过大，直接使用整体外接矩形
+        boolean useWholeEnvelope = boundary.getNumGeometries() > MAX_SEED_PARTS;
+        for (int i = 0; i < boundary.getNumGeometries() && !useWholeEnvelope; i++) {
+            Geometry part = boundary.getGeometryN(i);
+            Envelope envelope = part.getEnvelopeInternal();
+            for (Envelope other : envelopes) {
+                if (other.intersects(envelope)) {
+                    useWholeEnvelope = true;
+                    break;
+                }
+            }
+            envelopes.add(envelope);
+            areas.add(part.getArea());
+        }
+        if (useWholeEnvelope) {
+            // 外接矩形相交会导致重复爬取，退化为整体外接矩形，其粗格网仅保留与边界相交的格网
+            envelopes.clear();
+            areas.clear();
+            envelopes.add(boundary.getEnvelopeInternal());
+            areas.add(boundary.getArea());
+        }
+
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(boundary);
+        List<Double[]> tiles = new ArrayList<>();
+        for (int i = 0; i < envelopes.size(); i++) {
+            Envelope envelope = envelopes.get(i);
+            double fillRatio = envelope.getArea() == 0 ? 1 : areas.get(i) / envelope.getArea();
+            if (fillRatio >= MIN_FILL_RATIO) {
+                tiles.add(new Double[]{envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY()});
+                continue;
+            }
+            double itemWidth = envelope.getWidth() / gridSize;
+            double itemHeight = envelope.getHeight() / gridSize;
+            for (int m = 0; m < gridSize; m++) {
+                for (int n = 0; n < gridSize; n++) {
+                    Double[] bounds = {envelope.getMinX() + m * itemWidth, envelope.getMinY() + n * itemHeight,
+                            envelope.getMinX() + (m + 1) * itemWidth, envelope.getMinY() + (n + 1) * itemHeight};
+                    if (prepared.intersects(getGeometryByBounds(bounds))) {
+                        tiles.add(bounds);
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
 }
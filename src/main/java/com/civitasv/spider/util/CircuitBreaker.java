@@ -0,0 +1,177 @@
+package com.civitasv.spider.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 key 和接口熔断高德请求
+ * <p>
+ * 同一 key 在同一接口上连续出现 key 相关的错误（key 无效、IP 被拒、额度用尽等）时进入打开状态，
+ * 此时请求直接被拒绝，key 池也不再选择该 key；等待一段时间后进入半开状态，仅放行一个探测请求，
+ * 探测成功则恢复，失败则再次打开并延长等待时间
+ */
+public class CircuitBreaker {
+    public static final String POI_ENDPOINT = "place/polygon";
+    public static final String GEOCODING_ENDPOINT = "geocode/geo";
+
+    // 与 key 本身有关的高德错误码，换用其他 key 可能成功；10004（访问过于频繁）为短时限流，不熔断
+    private static final Set<Integer> KEY_FAILURE_CODES = new HashSet<>(Arrays.asList(
+            10001, 10002, 10003, 10005, 10006, 10007, 10008, 10009, 10010, 10012, 10013, 10044, 40000, 40002));
+
+    private static final CircuitBreaker instance = new CircuitBreaker(3,
+            TimeUnit.SECONDS.toNanos(30), TimeUnit.MINUTES.toNanos(5));
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long baseOpenNanos;
+    private final long maxOpenNanos;
+    private final ConcurrentHashMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    public static CircuitBreaker getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param failureThreshold 连续失败多少次后打开
+     * @param baseOpenNanos    首次打开的等待时间
+     * @param maxOpenNanos     探测连续失败时等待时间的上限
+     */
+    public CircuitBreaker(int failureThreshold, long baseOpenNanos, long maxOpenNanos) {
+        this.failureThreshold = failureThreshold;
+        this.baseOpenNanos = baseOpenNanos;
+        this.maxOpenNanos = maxOpenNanos;
+    }
+
+    /**
+     * 接口返回码是否说明 key 本身出了问题；网络异常与 key 无关，不计为 key 的错误
+     *
+     * @param infoCode 高德返回的 infocode，网络异常时为 null
+     */
+    public static boolean isKeyFailure(Integer infoCode) {
+        return infoCode != null && KEY_FAILURE_CODES.contains(infoCode);
+    }
+
+    /**
+     * 发出请求前调用，半开状态下获得探测资格
+     *
+     * @return 是否允许发出请求
+     */
+    public boolean tryAcquire(String key, String endpoint) {
+        return breaker(key, endpoint).tryAcquire();
+    }
+
+    /**
+     * key 当前是否可用，不改变熔断状态，供 key 池选择 key 时使用
+     */
+    public boolean isAvailable(String key, String endpoint) {
+        Breaker breaker = breakers.get(key + "|" + endpoint);
+        return breaker == null || breaker.isAvailable();
+    }
+
+    /**
+     * 记录请求结果，网络异常既不计为失败也不计为成功，仅归还探测资格
+     *
+     * @param infoCode 高德返回的 infocode，网络异常时为 null
+     */
+    public void onResult(String key, String endpoint, Integer infoCode) {
+        if (infoCode == null) {
+            breaker(key, endpoint).onCancel();
+        } else if (isKeyFailure(infoCode)) {
+            breaker(key, endpoint).onFailure();
+        } else {
+            breaker(key, endpoint).onSuccess();
+        }
+    }
+
+    /**
+     * 请求被取消，不计入结果，仅归还探测资格
+     */
+    public void onCancel(String key, String endpoint) {
+        breaker(key, endpoint).onCancel();
+    }
+
+    public State state(String key, String endpoint) {
+        Breaker breaker = breakers.get(key + "|" + endpoint);
+        return breaker == null ? State.CLOSED : breaker.state();
+    }
+
+    private Breaker breaker(String key, String endpoint) {
+        return breakers.computeIfAbsent(key + "|" + endpoint, k -> new Breaker());
+    }
+
+    private class Breaker {
+        private State state = State.CLOSED;
+        private int consecutiveFailures = 0;
+        private long openedAt;
+        private long openNanos = baseOpenNanos;
+        private boolean probing = false;
+
+        synchronized boolean tryAcquire() {
+            switch (state) {
+                case OPEN:
+                    if (System.nanoTime() - openedAt < openNanos) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    probing = true;
+                    return true;
+                case HALF_OPEN:
+                    if (probing) {
+                        return false;
+                    }
+                    probing = true;
+                    return true;
+                default:
+                    return true;
+            }
+        }
+
+        synchronized boolean isAvailable() {
+            switch (state) {
+                case OPEN:
+                    return System.nanoTime() - openedAt >= openNanos;
+                case HALF_OPEN:
+                    return !probing;
+                default:
+                    return true;
+            }
+        }
+
+        synchronized void onSuccess() {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            openNanos = baseOpenNanos;
+            probing = false;
+        }
+
+        synchronized void onFailure() {
+            if (state == State.HALF_OPEN) {
+                // 探测失败，延长等待时间
+                open(Math.min(maxOpenNanos, openNanos * 2));
+            } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+                open(baseOpenNanos);
+            }
+        }
+
+        synchronized void onCancel() {
+            probing = false;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        private void open(long nanos) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            openNanos = nanos;
+            probing = false;
+        }
+    }
+}
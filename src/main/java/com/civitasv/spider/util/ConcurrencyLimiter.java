@@ -0,0 +1,145 @@
+package com.civitasv.spider.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD（加性增、乘性减）自适应并发控制器
+ * <p>
+ * 控制同时进行中的请求数：收到 QPS 超限错误码时将并发上限减半，
+ * 连续成功 {@link #increaseAfterSuccesses} 次后并发上限加一，
+ * 从而在真实配额附近运行，并在短暂限流后自动恢复
+ * <p>
+ * 使用 {@link ReentrantLock} 而非 synchronized 等待，虚拟线程等待许可时不会占住载体线程
+ */
+public class ConcurrencyLimiter {
+    // 两次减半之间的最小间隔，避免同一时间窗口内的多个超限响应使上限连续减半
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int increaseAfterSuccesses;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private int limit;
+    private int inFlight = 0;
+    private int successesSinceChange = 0;
+    private long lastDecreaseNanos = System.nanoTime() - DECREASE_COOLDOWN_NANOS;
+
+    public ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this(initialLimit, 1, maxLimit, 0.5, 20);
+    }
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, int increaseAfterSuccesses) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("并发上限设置有误");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.increaseAfterSuccesses = increaseAfterSuccesses;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * 获取一个并发许可，进行中的请求数达到上限时阻塞等待
+     *
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 尝试立即获取一个并发许可，不阻塞
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 归还并发许可，每次 {@link #acquire()} 成功后必须调用一次
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求成功，连续成功足够次数后加性增加并发上限
+     */
+    public void onSuccess() {
+        lock.lock();
+        try {
+            if (++successesSinceChange >= increaseAfterSuccesses && limit < maxLimit) {
+                limit++;
+                successesSinceChange = 0;
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求被限流，乘性减小并发上限
+     *
+     * @return 本次是否减小了并发上限
+     */
+    public boolean onThrottle() {
+        lock.lock();
+        try {
+            successesSinceChange = 0;
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) {
+                return false;
+            }
+            lastDecreaseNanos = now;
+            int newLimit = Math.max(minLimit, (int) (limit * backoffRatio));
+            if (newLimit == limit) {
+                return false;
+            }
+            limit = newLimit;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int currentLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.civitasv.spider.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 爬取与地理编码工作线程池的创建
+ * <p>
+ * 启动参数 -Dspider.virtualThreads=true 开启虚拟线程模式：运行在 JDK 21+ 时，每个 job 使用一个虚拟线程，
+ * 线程数不再是并发上限，仅由限流器控制；运行在不支持虚拟线程的 JDK（如 JDK 8）上时，退回固定大小的线程池
+ */
+@Slf4j
+public class ExecutorUtils {
+    public static final String VIRTUAL_THREADS_PROPERTY = "spider.virtualThreads";
+
+    // JDK 21+ 中的 Executors.newVirtualThreadPerTaskExecutor，不支持时为 null
+    private static final Method newVirtualThreadPerTaskExecutor = findVirtualThreadFactoryMethod();
+
+    public static boolean isVirtualThreadSupported() {
+        return newVirtualThreadPerTaskExecutor != null;
+    }
+
+    /**
+     * 是否使用虚拟线程执行 job
+     */
+    public static boolean useVirtualThreads() {
+        return Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) && isVirtualThreadSupported();
+    }
+
+    /**
+     * 创建执行网络请求的线程池
+     *
+     * @param threadNum 平台线程池的线程数目，虚拟线程模式下忽略
+     * @return 线程池
+     */
+    public static ExecutorService newWorkerPool(int threadNum) {
+        if (useVirtualThreads()) {
+            try {
+                return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("虚拟线程池创建失败，改用固定大小的线程池", e);
+            }
+        }
+        return Executors.newFixedThreadPool(threadNum);
+    }
+
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
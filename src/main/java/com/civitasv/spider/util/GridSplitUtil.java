@@ -0,0 +1,47 @@
+package com.civitasv.spider.util;
+
+/**
+ * 切分格网时的判断
+ */
+public class GridSplitUtil {
+    // 高德返回的 count 最大为 1000，达到该值时不代表格网内的真实数量
+    public final static int AMAP_COUNT_LIMIT = 1000;
+    // 格网边长小于该值（度，约100米）且切分后数量不再减少时，视为poi聚集于一点，改为按poi子类型拆分查询
+    public final static double MIN_GRID_SIZE = 0.001;
+    // 格网边长小于该值（度，约1米）时无论数量如何都不再切分，避免同一坐标的poi超出接口上限时无限切分
+    public final static double MIN_SPLIT_SIZE = 0.00001;
+
+    /**
+     * 根据格网数量超出阈值的倍数确定切分的行列数，假设poi均匀分布时一次切分即可使子格网低于阈值
+     *
+     * @param count     格网的poi数量
+     * @param threshold 阈值
+     * @return 切分的行列数，介于 2 与 4 之间
+     */
+    public static int splitFactor(int count, int threshold) {
+        int k = (int) Math.ceil(Math.sqrt(count * 1.0 / threshold));
+        return Math.max(2, Math.min(4, k));
+    }
+
+    /**
+     * 格网是否已无法通过切分空间降低数量，例如商场、写字楼内的poi聚集于同一坐标
+     * <p>
+     * 需同时满足：格网边长小于 {@link #MIN_GRID_SIZE}，且数量未少于切分前的父格网；
+     * 父格网的数量达到接口上限时，父子格网数量相同只说明两者都被截断，不能作为依据
+     *
+     * @param count       格网的poi数量
+     * @param parentCount 切分前父格网的poi数量，初始格网为 null
+     * @param bounds      格网范围，[左下角经度, 左下角纬度, 右上角经度, 右上角纬度]
+     * @return 是否应停止空间切分
+     */
+    public static boolean isSaturated(int count, Integer parentCount, Double[] bounds) {
+        double size = Math.min(bounds[2] - bounds[0], bounds[3] - bounds[1]);
+        if (size < MIN_SPLIT_SIZE) {
+            return true;
+        }
+        if (parentCount == null || parentCount >= AMAP_COUNT_LIMIT || count < parentCount) {
+            return false;
+        }
+        return size < MIN_GRID_SIZE;
+    }
+}
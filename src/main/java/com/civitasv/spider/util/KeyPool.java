@@ -0,0 +1,242 @@
+package com.civitasv.spider.util;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 高德 key 池，供 POI 爬取与地理编码共用
+ * <p>
+ * 选择 key 时不加锁：随机取两个可用 key，选择负载更低、更快、更健康的一个（power of two choices）；
+ * 每个 key 记录进行中的请求数、错误率、平均耗时和尚未写入额度台账的调用量，额度用完的 key 从池中移除；
+ * 被 {@link CircuitBreaker} 熔断的 key 暂不选择
+ */
+public class KeyPool {
+    // 高德按北京时间每日零点重置调用量
+    public static final ZoneId QUOTA_ZONE = ZoneId.of("Asia/Shanghai");
+    // 耗时与错误率的指数加权平均系数
+    private static final double EWMA_ALPHA = 0.1;
+    // 尚无耗时数据的 key 的默认耗时
+    private static final double DEFAULT_LATENCY_MILLIS = 100;
+
+    // 可用 key，移除时整体替换数组
+    private final AtomicReference<KeyState[]> active;
+    private final Map<String, KeyState> states = new LinkedHashMap<>();
+    private final CircuitBreaker circuitBreaker;
+    // 熔断状态按接口区分
+    private final String endpoint;
+
+    /**
+     * @param keys     高德 key
+     * @param endpoint 使用这些 key 请求的接口，例如 {@link CircuitBreaker#POI_ENDPOINT}
+     */
+    public KeyPool(Collection<String> keys, String endpoint) {
+        this(keys, endpoint, CircuitBreaker.getInstance());
+    }
+
+    KeyPool(Collection<String> keys, String endpoint, CircuitBreaker circuitBreaker) {
+        this.endpoint = endpoint;
+        this.circuitBreaker = circuitBreaker;
+        for (String key : keys) {
+            states.putIfAbsent(key, new KeyState(key));
+        }
+        this.active = new AtomicReference<>(states.values().toArray(new KeyState[0]));
+    }
+
+    /**
+     * 选择一个 key，跳过被熔断的 key
+     *
+     * @return 选定的 key，key 池为空时返回 null；所有 key 均被熔断时仍返回其中一个，由熔断器拒绝请求
+     */
+    public String select() {
+        KeyState[] keys = active.get();
+        if (keys.length == 0) {
+            return null;
+        }
+        if (keys.length == 1) {
+            return keys[0].key;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(keys.length);
+        int j = random.nextInt(keys.length - 1);
+        if (j >= i) j++;
+        boolean iAvailable = isAvailable(keys[i]), jAvailable = isAvailable(keys[j]);
+        if (iAvailable && jAvailable) {
+            return keys[i].score() <= keys[j].score() ? keys[i].key : keys[j].key;
+        }
+        if (iAvailable || jAvailable) {
+            return iAvailable ? keys[i].key : keys[j].key;
+        }
+        for (int k = 1; k < keys.length; k++) {
+            KeyState state = keys[(i + k) % keys.length];
+            if (isAvailable(state)) {
+                return state.key;
+            }
+        }
+        return keys[i].key;
+    }
+
+    /**
+     * 除指定 key 外是否还有未被熔断的 key
+     */
+    public boolean hasAvailableExcept(String key) {
+        return Arrays.stream(active.get()).anyMatch(state -> !state.key.equals(key) && isAvailable(state));
+    }
+
+    /**
+     * key 是否仍在池中且未被熔断
+     */
+    public boolean isAvailable(String key) {
+        return Arrays.stream(active.get()).anyMatch(state -> state.key.equals(key) && isAvailable(state));
+    }
+
+    private boolean isAvailable(KeyState state) {
+        return circuitBreaker.isAvailable(state.key, endpoint);
+    }
+
+    /**
+     * 使用 key 发起请求前调用，与 {@link #end(String, long, boolean)} 成对使用
+     *
+     * @param key 高德 key
+     * @return 请求开始时间，传给 {@link #end(String, long, boolean)}
+     */
+    public long begin(String key) {
+        KeyState state = states.get(key);
+        if (state != null) {
+            state.inFlight.incrementAndGet();
+            state.requests.incrementAndGet();
+            state.unrecorded.incrementAndGet();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束后调用，记录耗时与结果
+     *
+     * @param key     高德 key
+     * @param begin   {@link #begin(String)} 的返回值
+     * @param success 请求是否成功
+     */
+    public void end(String key, long begin, boolean success) {
+        KeyState state = states.get(key);
+        if (state == null) {
+            return;
+        }
+        state.inFlight.decrementAndGet();
+        double latencyMillis = (System.nanoTime() - begin) * 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
+        updateEwma(state.latencyMillis, latencyMillis);
+        updateEwma(state.errorRate, success ? 0 : 1);
+        if (!success) {
+            state.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * 请求被主动取消（例如对冲请求中较慢的一个），不记录耗时与结果
+     *
+     * @param key 高德 key
+     */
+    public void cancel(String key) {
+        KeyState state = states.get(key);
+        if (state != null) {
+            state.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 移除 key，例如 key 当日额度已用完
+     *
+     * @return key 是否仍在池中，多个请求同时移除同一 key 时仅第一个返回 true
+     */
+    public boolean remove(String key) {
+        while (true) {
+            KeyState[] keys = active.get();
+            KeyState[] remained = Arrays.stream(keys).filter(state -> !state.key.equals(key)).toArray(KeyState[]::new);
+            if (remained.length == keys.length) {
+                return false;
+            }
+            if (active.compareAndSet(keys, remained)) {
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return active.get().length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 池中可用的 key
+     */
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (KeyState state : active.get()) {
+            keys.add(state.key);
+        }
+        return keys;
+    }
+
+    /**
+     * 取出上次调用以来各 key 的调用量，用于写入额度台账
+     */
+    public Map<String, Integer> drainUnrecorded() {
+        Map<String, Integer> usage = new LinkedHashMap<>();
+        for (KeyState state : states.values()) {
+            int count = state.unrecorded.getAndSet(0);
+            if (count > 0) usage.put(state.key, count);
+        }
+        return usage;
+    }
+
+    /**
+     * key 的统计信息，用于输出
+     */
+    public String stats(String key) {
+        KeyState state = states.get(key);
+        if (state == null) {
+            return key + "：不存在";
+        }
+        return String.format("%s：请求%d次，失败%d次，进行中%d个，平均耗时%.0fms，错误率%.1f%%，熔断状态%s",
+                key, state.requests.get(), state.errors.get(), state.inFlight.get(),
+                Double.longBitsToDouble(state.latencyMillis.get()), Double.longBitsToDouble(state.errorRate.get()) * 100,
+                circuitBreaker.state(key, endpoint));
+    }
+
+    private static void updateEwma(AtomicLong ewma, double value) {
+        ewma.updateAndGet(bits -> Double.doubleToLongBits(
+                Double.longBitsToDouble(bits) * (1 - EWMA_ALPHA) + value * EWMA_ALPHA));
+    }
+
+    private static class KeyState {
+        private final String key;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        // 尚未写入额度台账的调用量
+        private final AtomicInteger unrecorded = new AtomicInteger();
+        // double 的二进制表示
+        private final AtomicLong latencyMillis = new AtomicLong(Double.doubleToLongBits(DEFAULT_LATENCY_MILLIS));
+        private final AtomicLong errorRate = new AtomicLong(Double.doubleToLongBits(0));
+
+        KeyState(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 分数越低越优先：进行中的请求越少、耗时越短、错误率越低越好
+         */
+        double score() {
+            double latency = Double.longBitsToDouble(latencyMillis.get());
+            double health = Math.max(0.05, 1 - Double.longBitsToDouble(errorRate.get()));
+            return (inFlight.get() + 1) * latency / health;
+        }
+    }
+}
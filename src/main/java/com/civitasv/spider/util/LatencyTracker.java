@@ -0,0 +1,60 @@
+package com.civitasv.spider.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录最近若干次请求的耗时，估算耗时的分位数
+ * <p>
+ * 用于对冲请求：请求耗时超过该分位数仍未返回时，使用另一个 key 发出相同的请求，取先返回的结果
+ */
+public class LatencyTracker {
+    private final long[] samples;
+    private final double percentile;
+    private final int minSamples;
+    // 每记录多少次重新计算一次分位数
+    private final int recomputeInterval;
+
+    private int count = 0;
+    private int next = 0;
+    private volatile long percentileNanos = -1;
+
+    /**
+     * @param capacity   保留的最近样本数量
+     * @param percentile 分位数，例如 0.95
+     * @param minSamples 样本数量不足时不给出分位数
+     */
+    public LatencyTracker(int capacity, double percentile, int minSamples) {
+        if (capacity <= 0 || percentile <= 0 || percentile >= 1 || minSamples > capacity) {
+            throw new IllegalArgumentException("耗时统计参数设置有误");
+        }
+        this.samples = new long[capacity];
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.recomputeInterval = Math.max(1, capacity / 16);
+    }
+
+    /**
+     * 记录一次请求的耗时
+     *
+     * @param nanos 耗时，纳秒
+     */
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (count >= minSamples && (count < samples.length || next % recomputeInterval == 0)) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            percentileNanos = sorted[Math.min(count - 1, (int) Math.ceil(count * percentile) - 1)];
+        }
+    }
+
+    /**
+     * @return 耗时的分位数，毫秒，样本不足时返回 -1
+     */
+    public long percentileMillis() {
+        long nanos = percentileNanos;
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -6,6 +6,7 @@ import com.civitasv.spider.MainApplication;
 import com.civitasv.spider.mapper.*;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
@@ -20,7 +21,7 @@ public class MyBatisUtils {
 
     private static SqlSessionFactory mybatisPlusSqlSessionFactory;
 
-    public static SqlSessionFactory getDefaultMybatisPlus() {
+    public static synchronized SqlSessionFactory getDefaultMybatisPlus() {
         if (mybatisPlusSqlSessionFactory != null) {
             return mybatisPlusSqlSessionFactory;
         }
@@ -33,11 +34,29 @@ public class MyBatisUtils {
         configuration.addMapper(PoiMapper.class);
         configuration.addMapper(PoiCategoryMapper.class);
         configuration.addMapper(CityCodeMapper.class);
+        configuration.addMapper(GridPriorMapper.class);
+        configuration.addMapper(KeyQuotaMapper.class);
+        configuration.addMapper(ResponseCacheMapper.class);
         // configuration.setLogImpl(StdOutImpl.class);
-        mybatisPlusSqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        SqlSessionFactory sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        createTables(sqlSessionFactory);
+        mybatisPlusSqlSessionFactory = sqlSessionFactory;
         return mybatisPlusSqlSessionFactory;
     }
 
+    /**
+     * 创建后续版本新增的表和索引，旧版本的数据库中不存在这些表，仅在首次获取时执行一次
+     */
+    private static void createTables(SqlSessionFactory sqlSessionFactory) {
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            GridPriorMapper gridPriorMapper = session.getMapper(GridPriorMapper.class);
+            gridPriorMapper.createTableIfNotExists();
+            gridPriorMapper.createRegionIndexIfNotExists();
+            session.getMapper(KeyQuotaMapper.class).createTableIfNotExists();
+            session.getMapper(ResponseCacheMapper.class).createTableIfNotExists();
+        }
+    }
+
     public static DataSource dataSource() {
         PooledDataSource dataSource = new PooledDataSource();
         dataSource.setDriver("org.sqlite.JDBC");
@@ -0,0 +1,102 @@
+package com.civitasv.spider.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于令牌桶的限流器，每个高德 key 对应一个令牌桶
+ * <p>
+ * 令牌以 qps 的速率匀速生成，桶容量为 burst，请求在调用接口前先获取令牌，
+ * 因此总吞吐量被严格限制在 qps * key 数量以内，无需在请求结束后再休眠
+ */
+public class RateLimiter {
+    // 每个 key 每秒允许的请求数
+    private final int qps;
+    // 每个令牌桶的容量，即允许的突发请求数
+    private final int burst;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(int qps) {
+        this(qps, 1);
+    }
+
+    public RateLimiter(int qps, int burst) {
+        if (qps <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("qps 与 burst 必须大于0");
+        }
+        this.qps = qps;
+        this.burst = burst;
+    }
+
+    /**
+     * 获取指定 key 的一个令牌，令牌不足时阻塞等待
+     *
+     * @param key 高德 key
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    public void acquire(String key) throws InterruptedException {
+        long waitNanos = bucket(key).reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * 尝试立即获取指定 key 的一个令牌，不阻塞
+     *
+     * @param key 高德 key
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(String key) {
+        return bucket(key).tryReserve();
+    }
+
+    public int qps() {
+        return qps;
+    }
+
+    private TokenBucket bucket(String key) {
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(qps, burst));
+    }
+
+    private static class TokenBucket {
+        // 生成一个令牌所需的纳秒数
+        private final double nanosPerToken;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(int qps, int capacity) {
+            this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) * 1.0 / qps;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * 预定一个令牌，令牌数允许为负（即预支），返回调用方需要等待的纳秒数
+         * <p>
+         * 预支保证了等待中的线程按预定顺序依次获得令牌，不会同时醒来造成突发
+         */
+        synchronized long reserve() {
+            refill();
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+        }
+
+        synchronized boolean tryReserve() {
+            refill();
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / nanosPerToken);
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.civitasv.spider.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 合并同时进行的相同请求：相同参数的请求仅发出一次，结果由所有调用方共享
+ * <p>
+ * 调用方先通过 {@link #join} 加入进行中的请求，加入成功时无需占用 key、令牌和并发许可；
+ * 没有进行中的请求时再通过 {@link #lead} 发出请求。
+ * 每个调用方得到各自的 future，取消时仅在所有调用方都已取消后才取消底层请求
+ *
+ * @param <T> 请求结果类型
+ */
+public class SingleFlight<T> {
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Predicate<T> shareable;
+
+    /**
+     * @param shareable 结果能否共享给其他调用方，例如仅共享成功的结果
+     */
+    public SingleFlight(Predicate<T> shareable) {
+        this.shareable = shareable;
+    }
+
+    /**
+     * 加入参数相同的进行中请求，不发出新的请求
+     *
+     * @param flightKey 请求参数
+     * @return 没有进行中的请求时返回 null；否则返回共享的结果，结果不可共享（例如请求失败）时以 null 完成
+     */
+    public CompletableFuture<T> join(String flightKey) {
+        Flight flight = flights.get(flightKey);
+        return flight == null ? null : flight.subscribe(true);
+    }
+
+    /**
+     * 发出请求，并登记为该参数的进行中请求供其他调用方加入；
+     * 已有进行中的请求时（例如对冲请求）仍然发出，但不替换已登记的请求
+     *
+     * @param flightKey 请求参数
+     * @param call      实际发出请求
+     * @return 请求结果
+     */
+    public CompletableFuture<T> lead(String flightKey, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> source;
+        try {
+            source = call.get();
+        } catch (RuntimeException e) {
+            source = new CompletableFuture<>();
+            source.completeExceptionally(e);
+        }
+        Flight flight = new Flight(source);
+        if (flights.putIfAbsent(flightKey, flight) == null) {
+            source.whenComplete((result, throwable) -> flights.remove(flightKey, flight));
+        }
+        return flight.subscribe(false);
+    }
+
+    /**
+     * 加入参数相同的进行中请求，没有进行中的请求或共享的结果不可用时自行发出请求
+     *
+     * @param flightKey 请求参数
+     * @param call      实际发出请求
+     * @return 请求结果
+     */
+    public CompletableFuture<T> execute(String flightKey, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> joined = join(flightKey);
+        if (joined == null) {
+            return lead(flightKey, call);
+        }
+        CompletableFuture<T> result = joined.thenCompose(shared ->
+                shared != null ? CompletableFuture.completedFuture(shared) : lead(flightKey, call));
+        result.whenComplete((shared, throwable) -> {
+            if (result.isCancelled()) joined.cancel(true);
+        });
+        return result;
+    }
+
+    private class Flight {
+        private final CompletableFuture<T> source;
+        private int subscribers = 0;
+
+        Flight(CompletableFuture<T> source) {
+            this.source = source;
+        }
+
+        /**
+         * @param follower 是否为加入的调用方，加入的调用方只接收可共享的结果
+         */
+        synchronized CompletableFuture<T> subscribe(boolean follower) {
+            subscribers++;
+            CompletableFuture<T> view = new CompletableFuture<>();
+            source.whenComplete((result, throwable) -> {
+                if (follower) {
+                    view.complete(throwable == null && shareable.test(result) ? result : null);
+                } else if (throwable != null) {
+                    view.completeExceptionally(throwable);
+                } else {
+                    view.complete(result);
+                }
+            });
+            view.whenComplete((result, throwable) -> {
+                if (view.isCancelled()) unsubscribe();
+            });
+            return view;
+        }
+
+        private synchronized void unsubscribe() {
+            if (--subscribers == 0) {
+                source.cancel(true);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.function.Predicate;
 
 public class TaskUtil {
@@ -57,7 +58,35 @@ public class TaskUtil {
         return result;
     }
 
-    private static int getLevel(String adCode) {
+    /**
+     * 获取任务的实际边界，用于切分格网时剔除边界外的格网
+     *
+     * @param boundaryConfig 边界配置
+     * @param boundaryType   边界类型
+     * @return 边界 Geometry，矩形边界或获取失败时返回 null
+     * @throws IOException 用户文件不存在时报错
+     */
+    public static Geometry generateBoundaryGeometry(String boundaryConfig, BoundaryType boundaryType) throws IOException {
+        String configContent = boundaryConfig.split(":")[1];
+        String[] data = configContent.split(",");
+        switch (boundaryType) {
+            case ADCODE:
+                Map<String, Object> boundary = DataVUtil.getBoundaryAndAdNameByAdCodeFromDataV(data[0]);
+                return boundary == null ? null : (Geometry) boundary.get("gcj02Boundary");
+            case CUSTOM:
+                return BoundaryUtil.getBoundaryByUserFile(data[0], CoordinateType.getCoordinateType(data[1]));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 获取行政区级别
+     *
+     * @param adCode 行政区代码
+     * @return 0：全国，1：省份，2：城市，3：县/区
+     */
+    public static int getLevel(String adCode) {
         if ("100000".equals(adCode)) {
             return 0; // country
         } else if ("0000".equals(adCode.substring(2))) {
@@ -10,13 +10,22 @@ import com.civitasv.spider.model.bo.POI;
 import com.civitasv.spider.model.bo.Task;
 import com.civitasv.spider.model.po.JobPo;
 import com.civitasv.spider.model.po.TaskPo;
+import com.civitasv.spider.model.po.GridPriorPo;
+import com.civitasv.spider.model.po.KeyQuotaPo;
+import com.civitasv.spider.service.GridPriorService;
 import com.civitasv.spider.service.JobService;
+import com.civitasv.spider.service.KeyQuotaService;
+import com.civitasv.spider.service.PoiCategoryService;
 import com.civitasv.spider.service.PoiService;
 import com.civitasv.spider.service.TaskService;
+import com.civitasv.spider.service.serviceImpl.GridPriorServiceImpl;
 import com.civitasv.spider.service.serviceImpl.JobServiceImpl;
+import com.civitasv.spider.service.serviceImpl.KeyQuotaServiceImpl;
+import com.civitasv.spider.service.serviceImpl.PoiCategoryServiceImpl;
 import com.civitasv.spider.service.serviceImpl.PoiServiceImpl;
 import com.civitasv.spider.service.serviceImpl.TaskServiceImpl;
 import com.civitasv.spider.util.*;
+import com.civitasv.spider.webdao.AMapAsyncDao;
 import com.civitasv.spider.webdao.AMapDao;
 import com.civitasv.spider.webdao.impl.AMapDaoImpl;
 import com.google.gson.*;
@@ -25,6 +34,7 @@ import com.spatial4j.core.io.GeohashUtils;
 import javafx.application.Platform;
 import javafx.scene.control.*;
 import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.geotools.data.DataUtilities;
@@ -34,6 +44,7 @@ import org.geotools.feature.type.DateUtil;
 import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.json.simple.JSONArray;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
@@ -45,23 +56,33 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+@Slf4j
 public class POIViewModel {
     private final ViewHolder viewHolder;
     private final ConfigHolder configHolder;
 
     private final AMapDao mapDao;
+    private final AMapAsyncDao asyncMapDao;
     private final TaskService taskService;
     private final JobService jobService;
     private final PoiService poiService;
+    private final GridPriorService gridPriorService;
+    private final PoiCategoryService poiCategoryService;
+    private final KeyQuotaService keyQuotaService;
+    private final POIController controller;
 
     private ExecutorService worker, executorService;
-    private ExecutorCompletionService<Job> completionService;
+    // 请求超时与key额度重置后自动继续任务的定时器
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> pendingResume;
 
     public void outputFields(List<POI.OutputFields> outputFields) {
         this.viewHolder.outputFields = outputFields;
@@ -98,10 +119,21 @@ public class POIViewModel {
                 .build();
         this.viewHolder.initOutputFields();
         this.configHolder = new ConfigHolder();
-        this.mapDao = new AMapDaoImpl();
+        AMapDaoImpl aMapDao = new AMapDaoImpl();
+        this.mapDao = aMapDao;
+        this.asyncMapDao = aMapDao;
         this.taskService = new TaskServiceImpl();
         this.jobService = new JobServiceImpl();
         this.poiService = new PoiServiceImpl();
+        this.gridPriorService = new GridPriorServiceImpl();
+        this.poiCategoryService = new PoiCategoryServiceImpl();
+        this.keyQuotaService = new KeyQuotaServiceImpl();
+        this.controller = controller;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "poi-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Builder
@@ -144,11 +176,29 @@ public class POIViewModel {
 
     private static class ConfigHolder {
         public static final int SIZE = 20;
-        public Queue<String> aMapKeys;
+        // 额度重置后延迟一段时间再继续任务，避免本地时钟与服务器不一致
+        public static final long RESUME_DELAY_MINUTES = 5;
+        // 单个请求的超时时间，超时的请求被取消并视为可重试的失败，不影响其他请求
+        public static final long REQUEST_DEADLINE_SECONDS = 20;
+        // 对冲请求：耗时超过近期请求耗时的95分位数仍未返回时，使用另一个key重发，-Dspider.hedging=false 关闭
+        public static final boolean HEDGING = !"false".equals(System.getProperty("spider.hedging"));
+        public static final double HEDGE_PERCENTILE = 0.95;
+        public static final long MIN_HEDGE_DELAY_MILLIS = 50;
+        // 失败job重试的退避时间，QPS超限时使用更长的基准时间
+        public static final long RETRY_BASE_MILLIS = 500;
+        public static final long THROTTLE_RETRY_BASE_MILLIS = 2000;
+        public static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+        // 任务量过大时不再弹窗确认，用于基准测试等无人值守的场景，-Dspider.skipLargeTaskHint=true 开启
+        public static final boolean SKIP_LARGE_TASK_HINT = Boolean.getBoolean("spider.skipLargeTaskHint");
+        public KeyPool keyPool;
         public Integer threadNum;
         public Integer threshold;
         private Integer qps;
-        public Integer perExecuteTime;
+        // 每个key的默认每日额度，仅用于估算，key用完额度后以台账中记录的实际调用量为准
+        private Integer dailyQuota;
+        public RateLimiter rateLimiter;
+        public ConcurrencyLimiter concurrencyLimiter;
+        public LatencyTracker latencyTracker;
         public String keywords;
         public String types;
         public String tab;
@@ -156,14 +206,29 @@ public class POIViewModel {
         public String extension = "base";
         public boolean haveSavedUnfinishedJobs = false;
         public boolean hasStart = false;
-        public int waitFactorForQps = 0;
         public final Set<TryAgainErrorCode> errorCodeHashSet = Arrays.stream(new Integer[]{10019, 10020, 10021, 10022, 10014, 10015}).map(TryAgainErrorCode::getError).collect(Collectors.toSet());
     }
 
+    /**
+     * 切分与爬取流水线的状态
+     * <p>
+     * 切分过程中确定的格网立即派发第二页往后的job，与切分共享 key 的令牌和并发许可
+     */
+    private static class PagePipeline {
+        public static final int SAVE_THRESHOLD = 50;
+        // 已派发但尚未返回的job
+        public final Set<Job> crawling = new HashSet<>();
+        // 已返回、等待处理的job
+        public final BlockingQueue<Job> crawled = new LinkedBlockingQueue<>();
+        // 已处理、等待写入数据库的job
+        public final List<Job> cached = new ArrayList<>();
+        public int dispatchedCount = 0;
+        public int succeededCount = 0;
+    }
+
     private void otherParams() {
         configHolder.haveSavedUnfinishedJobs = false;
         configHolder.hasStart = false;
-        configHolder.waitFactorForQps = 0;
     }
 
     private boolean check() {
@@ -211,7 +276,7 @@ public class POIViewModel {
             Platform.runLater(() -> MessageUtil.alert(Alert.AlertType.ERROR, "高德key", null, "请检查key的格式！"));
             return false;
         }
-        configHolder.aMapKeys = aMapKeys;
+        configHolder.keyPool = new KeyPool(aMapKeys, CircuitBreaker.POI_ENDPOINT);
         appendMessage("高德key读取成功");
         return true;
     }
@@ -272,23 +337,51 @@ public class POIViewModel {
 
     private boolean qps() {
         // 读取开发者类型
-        int qps = 0;
+        int qps = 0, dailyQuota = 0;
         appendMessage("您是" + viewHolder.userType.getValue());
         switch (viewHolder.userType.getValue()) {
             case IndividualDevelopers:
                 qps = 20;
+                dailyQuota = 5000;
                 break;
             case IndividualCertifiedDeveloper:
                 qps = 50;
+                dailyQuota = 30000;
                 break;
             case EnterpriseDeveloper:
                 qps = 300;
+                dailyQuota = 300000;
                 break;
         }
         configHolder.qps = qps;
+        configHolder.dailyQuota = dailyQuota;
         return true;
     }
 
+    /**
+     * 根据额度台账移除今日额度已用完的key
+     *
+     * @param task 继续执行的task，新建任务时为null
+     * @return 是否还有可用key
+     */
+    private boolean keyQuota(Task task) {
+        for (KeyQuotaPo keyQuotaPo : keyQuotaService.list(quotaDate())) {
+            if (keyQuotaPo.exhaustedAt() != null && configHolder.keyPool.remove(keyQuotaPo.amapKey())) {
+                appendMessage("key----" + keyQuotaPo.amapKey() + "已于" + keyQuotaPo.exhaustedAt() + "达到今日调用量上限，暂不使用");
+            }
+        }
+        if (!configHolder.keyPool.isEmpty()) {
+            return true;
+        }
+        if (task != null) {
+            appendMessage("所有key今日额度均已用完");
+            scheduleResume();
+        } else {
+            Platform.runLater(() -> MessageUtil.alert(Alert.AlertType.ERROR, "高德key", null, "所有key今日额度均已用完，请更换key或等待额度重置！"));
+        }
+        return false;
+    }
+
     private boolean tab() {
         String tab = viewHolder.tabs.getSelectionModel().getSelectedItem().getText();
         switch (tab) {
@@ -334,8 +427,8 @@ public class POIViewModel {
     }
 
     private void alterThreadNum() {
-        if (configHolder.threadNum > configHolder.qps * configHolder.aMapKeys.size()) {
-            int maxThreadNum = getMaxThreadNum(configHolder.qps, configHolder.aMapKeys.size());
+        if (configHolder.threadNum > configHolder.qps * configHolder.keyPool.size()) {
+            int maxThreadNum = getMaxThreadNum(configHolder.qps, configHolder.keyPool.size());
             appendMessage(viewHolder.userType.getValue() + "线程数不能超过" + maxThreadNum);
             configHolder.threadNum = maxThreadNum;
             appendMessage("设置线程数目为" + maxThreadNum);
@@ -347,23 +440,23 @@ public class POIViewModel {
     }
 
     /**
-     * 根据线程数、key 数目和 QPS 设置每次运行时间
-     * <p>
-     * threadNum: 线程数目
-     * <p>
-     * qps:       用户 qps
-     * <p>
-     * keysNum:   key 数量
+     * 根据用户 QPS 为每个 key 构建令牌桶，所有线程在请求前从中获取令牌
      * <p>
-     * 每次运行时间 ms
+     * 总吞吐量 = qps * key 数量
      */
-    private void perExecuteTime() {
-        int threadNum = configHolder.threadNum, qps = configHolder.qps, keysNum = configHolder.aMapKeys.size();
-        configHolder.perExecuteTime = getPerExecuteTime(keysNum, threadNum, qps, 1);
+    private void rateLimiter() {
+        configHolder.rateLimiter = new RateLimiter(configHolder.qps);
     }
 
-    private int getPerExecuteTime(int keysNum, int threadNum, int qps, double waitFactor) {
-        return (int) ((1000 * (threadNum * 1.0 / (qps * keysNum))) * waitFactor);
+    /**
+     * 构建自适应并发控制器，初始并发数为线程数，上限为 qps * key 数量
+     * <p>
+     * 遇到 QPS 超限错误码时并发数减半，连续成功后逐步回升
+     */
+    private void concurrencyLimiter() {
+        configHolder.concurrencyLimiter = new ConcurrencyLimiter(configHolder.threadNum,
+                getMaxThreadNum(configHolder.qps, configHolder.keyPool.size()));
+        configHolder.latencyTracker = new LatencyTracker(1024, ConfigHolder.HEDGE_PERCENTILE, 100);
     }
 
     public static Double[] getBoundaryFromGeometry(Geometry geometry) {
@@ -375,6 +468,7 @@ public class POIViewModel {
     }
 
     public void execute(Task task) {
+        cancelResume();
         clearMessage();
         if (!check()) return;
         if (!aMapKeys()) return;
@@ -383,16 +477,19 @@ public class POIViewModel {
         if (!keywords()) return;
         if (!types()) return;
         if (!qps()) return;
+        if (!keyQuota(task)) return;
         if (!tab()) return;
         extension();
         alterThreadNum();
-        perExecuteTime();
+        rateLimiter();
+        concurrencyLimiter();
         otherParams();
         analysis(true);
 
         worker = Executors.newSingleThreadExecutor();
         if (task == null) {
             String boundaryConfig = "";
+            Geometry boundaryGeometry = null;
             switch (configHolder.tab) {
                 case "行政区":
                     if (!configHolder.hasStart) return;
@@ -409,6 +506,7 @@ public class POIViewModel {
                     String adName = (String) data.get("adName");
                     Geometry geometry = (Geometry) data.get("gcj02Boundary");
                     configHolder.boundary = getBoundaryFromGeometry(geometry);
+                    boundaryGeometry = geometry;
                     if (!configHolder.hasStart) return;
                     appendMessage("成功获取行政区 " + adCode + ":" + adName + " 区域边界");
                     boundaryConfig = configHolder.tab + ":" + adCode + "," + adName;
@@ -438,13 +536,14 @@ public class POIViewModel {
                     try {
                         boundary = BoundaryUtil.getBoundaryByUserFile(viewHolder.userFile.getText(), viewHolder.userFileCoordinateType.getValue());
                     } catch (IOException e) {
-                        e.printStackTrace();
+                        log.warn("geojson文件解析失败", e);
                         if (!configHolder.hasStart) return;
                         Platform.runLater(() -> MessageUtil.alert(Alert.AlertType.ERROR, "自定义", null, "geojson文件解析失败：" + e.getMessage()));
                         analysis(false);
                         return;
                     }
                     configHolder.boundary = getBoundaryFromGeometry(boundary);
+                    boundaryGeometry = boundary;
 
                     boundaryConfig = configHolder.tab + ":" + viewHolder.userFile.getText() + ","
                             + viewHolder.userFileCoordinateType.getValue().description();
@@ -455,7 +554,7 @@ public class POIViewModel {
             try {
                 BoundaryType boundaryType = BoundaryType.getBoundaryType(boundaryConfig.split(":")[0]);
                 task = Task.builder()
-                        .aMapKeys(configHolder.aMapKeys)
+                        .aMapKeys(new ArrayDeque<>(configHolder.keyPool.keys()))
                         .types(configHolder.types)
                         .keywords(configHolder.keywords)
                         .threadNum(configHolder.threadNum)
@@ -479,8 +578,9 @@ public class POIViewModel {
                 taskService.save(taskPo);
                 // 自增 id
                 task = taskPo.toTask();
+                if (boundaryGeometry != null) task.boundaryGeometry(PreparedGeometryFactory.prepare(boundaryGeometry));
             } catch (IOException e) {
-                e.printStackTrace();
+                log.warn("task构建失败", e);
                 Platform.runLater(() -> MessageUtil.alert(Alert.AlertType.ERROR, "自定义", null, "task构建失败：" + e.getMessage()));
                 return;
             }
@@ -488,18 +588,63 @@ public class POIViewModel {
 
         Task finalTask = task;
         worker.execute(() -> {
-            executorService = Executors.newFixedThreadPool(finalTask.threadNum());
-            completionService = new ExecutorCompletionService<>(executorService);
+            if (ExecutorUtils.useVirtualThreads()) {
+                appendMessage("已开启虚拟线程模式，并发数由限流器控制");
+            }
+            executorService = ExecutorUtils.newWorkerPool(finalTask.threadNum());
             executeTask(finalTask);
+            asyncMapDao.flushCache();
+            recordKeyUsage();
+            if (configHolder.keyPool.isEmpty()) {
+                // key额度全部用完，额度重置后自动继续
+                scheduleResume();
+            }
             analysis(false);
         });
     }
 
 
     public void cancel() {
+        cancelResume();
         analysis(false);
     }
 
+    /**
+     * 额度台账使用的日期，与高德重置额度的时区一致
+     */
+    private static LocalDate quotaDate() {
+        return LocalDate.now(KeyPool.QUOTA_ZONE);
+    }
+
+    /**
+     * 将key的调用量写入额度台账
+     */
+    private void recordKeyUsage() {
+        if (configHolder.keyPool == null) return;
+        keyQuotaService.addUsage(quotaDate(), configHolder.keyPool.drainUnrecorded());
+    }
+
+    /**
+     * 在下一次额度重置后自动继续上一未完成任务
+     */
+    private synchronized void scheduleResume() {
+        cancelResume();
+        ZonedDateTime now = ZonedDateTime.now(KeyPool.QUOTA_ZONE);
+        ZonedDateTime resumeAt = now.toLocalDate().plusDays(1).atStartOfDay(KeyPool.QUOTA_ZONE)
+                .plusMinutes(ConfigHolder.RESUME_DELAY_MINUTES);
+        pendingResume = scheduler.schedule(() -> Platform.runLater(controller::resumeLastTask),
+                Duration.between(now, resumeAt).toMillis(), TimeUnit.MILLISECONDS);
+        appendMessage("任务已暂停，将于" + resumeAt.toLocalDateTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+                + "（北京时间）key额度重置后自动继续，点击执行可提前继续");
+    }
+
+    private synchronized void cancelResume() {
+        if (pendingResume != null) {
+            pendingResume.cancel(false);
+            pendingResume = null;
+        }
+    }
+
     private void analysis(boolean start) {
         if (!configHolder.hasStart && !start) {
             return;
@@ -552,7 +697,7 @@ public class POIViewModel {
     }
 
     private boolean continueLargeTaskByDialog(int jobSize, int hintCount) {
-        if (jobSize < hintCount) {
+        if (jobSize < hintCount || ConfigHolder.SKIP_LARGE_TASK_HINT) {
             return true;
         }
         final FutureTask<Boolean> query = new FutureTask<>(() ->
@@ -568,7 +713,8 @@ public class POIViewModel {
             // 阻塞本线程
             return query.get();
         } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
+            log.warn("任务量提示框出错", e);
+            appendMessage("任务量提示框出错，放弃本次爬取");
             return false;
         }
     }
@@ -579,7 +725,7 @@ public class POIViewModel {
      * @param task task对象
      */
     private void executeTask(Task task) {
-        configHolder.waitFactorForQps = 0;
+        configureDedup(task);
         if (TaskStatus.UnStarted.equals(task.taskStatus()) || TaskStatus.Preprocessing.equals(task.taskStatus())) {
             // 清空数据表
             jobService.clearTable();
@@ -587,10 +733,20 @@ public class POIViewModel {
             task.taskStatus(TaskStatus.Preprocessing);
             taskService.updateById(task.toTaskPo());
             // 1. 获取所有任务网格的第一页
+            if (task.boundaryGeometry() == null) {
+                // 继续上次任务时，重新获取实际边界
+                try {
+                    Geometry boundaryGeometry = TaskUtil.generateBoundaryGeometry(task.boundaryConfig(), task.boundaryType());
+                    if (boundaryGeometry != null) task.boundaryGeometry(PreparedGeometryFactory.prepare(boundaryGeometry));
+                } catch (IOException e) {
+                    log.warn("重新获取实际边界失败", e);
+                    appendMessage("重新获取实际边界失败，使用外接矩形划分格网：" + e.getMessage());
+                }
+            }
             appendMessage("划分所有任务网格中");
             List<Job> firstPageJobs;
             try {
-                firstPageJobs = getAnalysisGridsReTry(task.boundary(), task, 3);
+                firstPageJobs = getAnalysisGridsReTry(planBeginJobs(task), task, 3);
             } catch (NoTryAgainException e) {
                 // e.printStackTrace();
                 if (configHolder.hasStart) appendMessage(e.getMessage());
@@ -598,17 +754,10 @@ public class POIViewModel {
             }
             task.jobs().addAll(firstPageJobs);
             appendMessage("任务网格切分成功，共有" + firstPageJobs.size() + "个任务网格");
+            saveGridPriors(task, firstPageJobs);
 
-            // 2. 生成第二页之后的的Job
-            List<Job> jobsAfterSecondPage = generateJobsAfterSecondPage(firstPageJobs);
-            task.jobs().addAll(jobsAfterSecondPage);
-
-            appendMessage("任务构建成功，共有" + task.jobs().size() + "个任务，还有" + jobsAfterSecondPage.size() + "个任务等待完成");
-            int requestLeastCount = jobsAfterSecondPage.size();
-            if (!continueLargeTaskByDialog(requestLeastCount, 5000)) {
-                analysis(false);
-                return;
-            }
+            // 2. 第二页之后的Job已在切分过程中派发爬取，此处仅统计未完成的Job
+            appendMessage("任务构建成功，共有" + jobService.count() + "个任务，还有" + jobService.countUnFinished() + "个任务等待完成");
             // 保存Task
             task.taskStatus(TaskStatus.Processing);
             taskService.updateById(task.toTaskPo());
@@ -665,16 +814,123 @@ public class POIViewModel {
         ));
     }
 
-    private List<Job> getAnalysisGridsReTry(Double[] beginRect, Task task, int tryTimes) throws NoTryAgainException {
-        Job beginJob = new Job(null, task.id(), beginRect, task.types(), task.keywords(), 1, configHolder.SIZE);
+    /**
+     * 省级、全国范围的任务poi数量可达千万级，使用布隆过滤器去重以限制内存占用，其余任务精确去重
+     *
+     * @param task task对象
+     */
+    private void configureDedup(Task task) {
+        if (task.boundaryType() == BoundaryType.ADCODE) {
+            String adCode = task.boundaryConfig().split(":")[1].split(",")[0];
+            int level = TaskUtil.getLevel(adCode);
+            if (level <= 1) {
+                poiService.useBloomFilterDedup(level == 0 ? 50_000_000L : 10_000_000L);
+                appendMessage("任务范围较大，使用布隆过滤器对poi去重");
+                return;
+            }
+        }
+        poiService.useExactDedup();
+    }
+
+    /**
+     * 将多个类型（或关键字）拆分为独立的查询组，每组使用各自的格网切分，共享key池与限流器
+     * <p>
+     * 多个类型时按类型拆分，仅有多个关键字时按关键字拆分，稀疏的类型只需少量请求，不会因密集类型而被过度切分
+     *
+     * @param task task对象
+     * @return 查询组，[类型, 关键字]
+     */
+    private List<String[]> planQueryGroups(Task task) {
+        List<String[]> groups = new ArrayList<>();
+        String[] types = task.types().split("\\|");
+        String[] keywords = task.keywords().split("\\|");
+        if (types.length > 1) {
+            for (String type : types) {
+                groups.add(new String[]{type, task.keywords()});
+            }
+        } else if (keywords.length > 1) {
+            for (String keyword : keywords) {
+                groups.add(new String[]{task.types(), keyword});
+            }
+        } else {
+            groups.add(new String[]{task.types(), task.keywords()});
+        }
+        return groups;
+    }
+
+    /**
+     * 生成每个查询组的切分起点
+     * <p>
+     * 优先使用该区域的历史格网，仅对数量超出阈值的格网继续切分，
+     * 历史数量未超出阈值的格网大概率无需再切分，直接爬取第一页；
+     * 没有历史格网时使用覆盖实际边界的初始格网
+     *
+     * @param task task对象
+     * @return 切分起点的第一页Job
+     */
+    private List<Job> planBeginJobs(Task task) {
+        List<String[]> groups = planQueryGroups(task);
+        if (groups.size() > 1) {
+            appendMessage("按" + (task.types().contains("|") ? "类型" : "关键字") + "拆分为" + groups.size() + "个查询组");
+        }
+        List<Double[]> initialTiles = null;
+        List<Job> beginJobs = new ArrayList<>();
+        for (String[] group : groups) {
+            List<Job> groupJobs = gridPriorService.list(task.boundaryConfig(), group[0], group[1])
+                    .stream().map(prior -> newGridJob(task, prior.bounds(), group[0], group[1], prior.poiCount() > task.threshold()))
+                    .collect(Collectors.toList());
+            if (!groupJobs.isEmpty()) {
+                appendMessage("使用历史格网" + groupJobs.size() + "个");
+            } else {
+                if (initialTiles == null) {
+                    initialTiles = task.boundaryGeometry() == null
+                            ? Collections.singletonList(task.boundary())
+                            : BoundaryUtil.getInitialTiles(task.boundaryGeometry().getGeometry(), 4);
+                }
+                groupJobs = initialTiles.stream()
+                        .map(bounds -> newGridJob(task, bounds, group[0], group[1], true))
+                        .collect(Collectors.toList());
+                appendMessage("初始格网共" + groupJobs.size() + "个");
+            }
+            for (Job job : groupJobs) {
+                job.groupTypes(group[0]).groupKeywords(group[1]);
+            }
+            beginJobs.addAll(groupJobs);
+        }
+        return beginJobs;
+    }
+
+    /**
+     * 记录本次切分结果，供下次爬取同一区域时使用，同一查询组内按类型拆分的格网合并为一个
+     *
+     * @param task  task对象
+     * @param grids 切分得到的格网
+     */
+    private void saveGridPriors(Task task, List<Job> grids) {
+        Map<String, List<Job>> groups = grids.stream().collect(Collectors.groupingBy(
+                job -> job.groupTypes() + "#" + job.groupKeywords(), LinkedHashMap::new, Collectors.toList()));
+        for (List<Job> groupGrids : groups.values()) {
+            String types = groupGrids.get(0).groupTypes();
+            String keywords = groupGrids.get(0).groupKeywords();
+            Map<String, Integer> gridCounts = groupGrids.stream().collect(Collectors.toMap(
+                    job -> Arrays.stream(job.bounds()).map(Object::toString).collect(Collectors.joining(",")),
+                    job -> job.poi().count(), Integer::sum, LinkedHashMap::new));
+            gridPriorService.replace(task.boundaryConfig(), types, keywords, gridCounts.entrySet().stream()
+                    .map(entry -> new GridPriorPo(null, task.boundaryConfig(), types, keywords, entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private List<Job> getAnalysisGridsReTry(List<Job> beginJobs, Task task, int tryTimes) throws NoTryAgainException {
         ArrayList<Job> falseJobs = new ArrayList<>();
-        List<Job> analysisGrids = getAnalysisGrids(Collections.singletonList(beginJob), task, 0, falseJobs);
+        PagePipeline pipeline = new PagePipeline();
+        List<Job> analysisGrids = getAnalysisGrids(beginJobs, task, 0, falseJobs, pipeline);
         int i = 1;
         while (falseJobs.size() != 0) {
             appendMessage("正在重试：第" + i + "次");
             ArrayList<Job> newTryJobs = new ArrayList<>(falseJobs);
             falseJobs.clear();
-            analysisGrids.addAll(getAnalysisGrids(newTryJobs, task, analysisGrids.size(), falseJobs));
+            analysisGrids.addAll(getAnalysisGrids(newTryJobs, task, analysisGrids.size(), falseJobs, pipeline));
             if (i == tryTimes) {
                 appendMessage("已重试三次" + "重试失败，还有" + falseJobs.size() + "个Job未切分");
                 appendMessage("请重新点击执行，尝试爬取，或放弃尝试");
@@ -682,7 +938,11 @@ public class POIViewModel {
             }
             i++;
         }
-        int requestTimesForPreProcessing = task.requestActualTimes() - analysisGrids.size();
+        // 等待流水线中剩余的页面爬取完毕
+        collectCrawledPages(pipeline, task, true);
+        appendMessage("切分过程中已爬取" + pipeline.dispatchedCount + "个任务，其中成功" + pipeline.succeededCount + "个");
+        long firstPageCount = analysisGrids.stream().filter(job -> !job.probe()).count();
+        int requestTimesForPreProcessing = (int) (task.requestActualTimes() - firstPageCount - pipeline.succeededCount);
         appendMessage("用于额外探测的请求有 " + requestTimesForPreProcessing + " 次");
         task.plusRequestExceptedTimes(requestTimesForPreProcessing);
         return analysisGrids;
@@ -690,265 +950,381 @@ public class POIViewModel {
 
     /**
      * 爬取第一页生成poi爬取格网，每个格网的数据量小于阈值。
+     * <p>
+     * 每个格网的数量返回后立即决定是否继续四分，不等待同层其他格网，
+     * 格网确定后立即派发其第二页往后的job，切分与爬取同时进行；首次切分时，用户确认任务量之前不派发页面job
      *
-     * @param tryJobs 初始尝试的Job
-     * @param task    task对象
+     * @param tryJobs  初始尝试的Job
+     * @param task     task对象
+     * @param pipeline 切分与爬取流水线
      * @return 划分格网的第一页Job
      */
-    private List<Job> getAnalysisGrids(List<Job> tryJobs, Task task, int baseJobCount, ArrayList<Job> falseJobs) throws NoTryAgainException {
-        ExecutorService executorService = Executors.newFixedThreadPool(task.threadNum());
+    private List<Job> getAnalysisGrids(List<Job> tryJobs, Task task, int baseJobCount, ArrayList<Job> falseJobs, PagePipeline pipeline) throws NoTryAgainException {
+        ExecutorService executorService = ExecutorUtils.newWorkerPool(task.threadNum());
         List<Job> analysisGrid = new ArrayList<>();
-        CompletionService<Job> completionService = new ExecutorCompletionService<>(executorService);
-
-        List<Job> nextTryJobs = new ArrayList<>();
+        // 已派发但尚未返回的格网
+        Set<Job> probing = new HashSet<>();
+        BlockingQueue<Job> probed = new LinkedBlockingQueue<>();
+        // 首次切分时，根据初始格网的poi总数提示任务量
+        Set<Job> unConfirmedJobs = new HashSet<>();
+        if (baseJobCount == 0 && pipeline.dispatchedCount == 0) unConfirmedJobs.addAll(tryJobs);
+        int confirmPoiCount = 0;
+        // 用户确认任务量之前确定的格网，其页面暂不派发
+        List<Job> heldPageJobs = new ArrayList<>();
 
-        while (tryJobs.size() != 0) {
-            List<Job> unTriedJobs = new ArrayList<>(tryJobs);
+        try {
             for (Job job : tryJobs) {
-                if (!configHolder.hasStart) {
-                    throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK);
+                dispatchJob(executorService, job, probing, probed);
+            }
+            while (!probing.isEmpty()) {
+                // 每个请求都有各自的超时时间，结果到达后立即处理
+                Job job = probed.take();
+                probing.remove(job);
+                task.plusRequestActualTimes(); //增加请求次数
+                if (job.noTryAgainErrorCode() != null) {
+                    throw new NoTryAgainException(job.noTryAgainErrorCode());
                 }
-                completionService.submit(() -> {
-                    try {
-                        executeJob(job);
-                        return job;
-                    } catch (TryAgainException e) {
-                        // 执行完job对爬取结果的处理
-                        // 如果主动停止，则不输出
-                        synchronized (this) {
-                            appendMessage(e.getMessage());
-                            job.jobStatus(JobStatus.Failed);
-                            job.tryAgainErrorCode(e.tryAgainError());
-                            return job;
-                        }
-                    } catch (NoTryAgainException e) {
-                        // 执行完job对爬取结果的处理
-                        // 如果主动停止，则不输出
-                        synchronized (this) {
-                            appendMessage(e.getMessage());
-                            // 暂定本次爬取
-                            analysis(false);
-                            job.jobStatus(JobStatus.Failed);
-                            job.noTryAgainErrorCode(e.noTryAgainError());
-                            return job;
-                        }
+                if (job.jobStatus() == JobStatus.SUCCESS && unConfirmedJobs.contains(job)) {
+                    confirmPoiCount += job.poi().count();
+                }
+                if (unConfirmedJobs.remove(job) && unConfirmedJobs.isEmpty()) {
+                    int requestLeastCount = (int) Math.ceil(confirmPoiCount * 1.0 / configHolder.SIZE);
+                    if (!continueLargeTaskByDialog(requestLeastCount, 5000)) {
+                        analysis(false);
+                        throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK);
                     }
-                });
-            }
-
-            int tryTimes = (int) (20 / 0.5);
-            for (int i = 0; i < tryJobs.size(); i++) {
-                for (int j = 0; j < tryTimes; j++) {
-                    Future<Job> future;
-                    try {
-                        future = completionService.poll(500, TimeUnit.MILLISECONDS);
-                        if (future != null) {
-                            task.plusRequestActualTimes(); //增加请求次数
-                            Job job = future.get();
-                            unTriedJobs.remove(job);
-                            if (job.jobStatus() != JobStatus.SUCCESS) {
-                                if (job.noTryAgainErrorCode() != null) {
-                                    throw new NoTryAgainException(job.noTryAgainErrorCode());
-                                }
-                                falseJobs.add(job);
-                                break;
-                            }
-                            if (job.poi().count() > task.threshold()) {
-                                appendMessage("超出阈值，继续四分，已包含" + (analysisGrid.size() + baseJobCount) + "个任务");
-                                // 继续四分
-                                Double left = job.bounds()[0], bottom = job.bounds()[1], right = job.bounds()[2], top = job.bounds()[3];
-                                double itemWidth = (right - left) / 2;
-                                double itemHeight = (top - bottom) / 2;
-                                for (int m = 0; m < 2; m++) {
-                                    for (int n = 0; n < 2; n++) {
-                                        Double[] bounds = {left + m * itemWidth, bottom + n * itemHeight,
-                                                left + (m + 1) * itemWidth, bottom + (n + 1) * itemHeight};
-                                        nextTryJobs.add(new Job(null, task.id(), bounds, task.types(), task.keywords(), 1, configHolder.SIZE));
-                                    }
-                                }
-                            } else {
-                                analysisGrid.add(job);  // new double[]{left, bottom, right, top});
-                                statistics(job, task);
-                                appendMessage("已包含" + (analysisGrid.size() + baseJobCount) + "个任务");
-                            }
-                            break;
-                        }
-                        if ((j + 1) == tryTimes) {
-                            throw new TimeoutException();
-                        }
-                    } catch (TimeoutException e) {
-//                        e.printStackTrace();
-                        falseJobs.addAll(unTriedJobs);
-                    } catch (InterruptedException | ExecutionException e) {
-//                        e.printStackTrace();
-                        throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e);
+                    dispatchPageJobs(heldPageJobs, pipeline);
+                    heldPageJobs.clear();
+                }
+                if (job.jobStatus() != JobStatus.SUCCESS) {
+                    falseJobs.add(job);
+                    continue;
+                }
+                List<Job> partitions = null;
+                if (job.poi().count() > task.threshold() && GridSplitUtil.isSaturated(job.poi().count(), job.parentCount(), job.bounds())) {
+                    partitions = partitionByType(job, task);
+                    if (partitions.isEmpty()) {
+                        appendMessage("格网已无法继续拆分，按当前数量爬取：" + job.poi().count() + "条");
+                    } else {
+                        appendMessage("格网切分后数量不再减少，按POI子类型拆分为" + partitions.size() + "个查询");
                     }
+                } else if (job.poi().count() > task.threshold()) {
+                    int k = GridSplitUtil.splitFactor(job.poi().count(), task.threshold());
+                    appendMessage("超出阈值，继续切分为" + k + "×" + k + "，已包含" + (analysisGrid.size() + baseJobCount) + "个任务");
+                    // 继续切分
+                    partitions = splitJob(job, task, k);
                 }
+                if (partitions != null && !partitions.isEmpty()) {
+                    for (Job child : partitions) {
+                        dispatchJob(executorService, child, probing, probed);
+                    }
+                } else {
+                    analysisGrid.add(job);  // new double[]{left, bottom, right, top});
+                    // 探测请求仅获取了数量，不计入爬取结果
+                    if (!job.probe()) statistics(job, task);
+                    appendMessage("已包含" + (analysisGrid.size() + baseJobCount) + "个任务");
+                    if (unConfirmedJobs.isEmpty()) {
+                        dispatchPageJobs(generatePageJobs(job), pipeline);
+                    } else {
+                        heldPageJobs.addAll(generatePageJobs(job));
+                    }
+                }
+                collectCrawledPages(pipeline, task, false);
             }
-            tryJobs = nextTryJobs;
-            nextTryJobs = new ArrayList<>();
+        } catch (InterruptedException | RejectedExecutionException e) {
+//            e.printStackTrace();
+            throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e);
+        } finally {
+            executorService.shutdown();
         }
 
         // 统计请求相关参数
         for (Job job : analysisGrid) {
             POI poi = job.poi();
             task.plusPoiExceptedSum(poi.count());
-            task.plusRequestExceptedTimes((int) Math.ceil(poi.count() * 1.0 / job.size()));
+            task.plusRequestExceptedTimes((int) Math.ceil(poi.count() * 1.0 / configHolder.SIZE));
             job.poiExpectedCount(Math.min(poi.count(), job.size()));
         }
 
-        // 保存第一页的数据
+        // 保存第一页的数据，探测得到的格网其第一页已交由流水线爬取
+        List<Job> firstPageJobs = analysisGrid.stream().filter(job -> !job.probe()).collect(Collectors.toList());
         taskService.updateById(task.toTaskPo());
-        jobService.saveBatch(BeanUtils.jobs2JobPos(analysisGrid));
-        poiService.saveBatch(BeanUtils.jobs2PoiPos(analysisGrid, configHolder.extension.equals("all")));
+        jobService.saveBatch(BeanUtils.jobs2JobPos(firstPageJobs));
+        poiService.saveBatch(BeanUtils.jobs2PoiPos(firstPageJobs, configHolder.extension.equals("all")));
         return analysisGrid;
     }
 
     /**
-     * 生成第二页往后的Job
+     * 将超出阈值的格网切分为 k * k 个子格网，与任务实际边界不相交的子格网不再探测
+     *
+     * @param job  超出阈值的格网
+     * @param task task对象
+     * @param k    切分的行列数
+     * @return 子格网的第一页Job
+     */
+    private List<Job> splitJob(Job job, Task task, int k) {
+        List<Job> children = new ArrayList<>();
+        Double left = job.bounds()[0], bottom = job.bounds()[1], right = job.bounds()[2], top = job.bounds()[3];
+        double itemWidth = (right - left) / k;
+        double itemHeight = (top - bottom) / k;
+        for (int m = 0; m < k; m++) {
+            for (int n = 0; n < k; n++) {
+                Double[] bounds = {left + m * itemWidth, bottom + n * itemHeight,
+                        left + (m + 1) * itemWidth, bottom + (n + 1) * itemHeight};
+                // 剔除与实际边界不相交的子格网
+                if (task.boundaryGeometry() != null && !task.boundaryGeometry().intersects(BoundaryUtil.getGeometryByBounds(bounds))) {
+                    continue;
+                }
+                // 子格网数量预计仍超出阈值时，仅探测数量
+                children.add(newGridJob(task, bounds, job.types(), job.keywords(), job.poi().count() / (k * k) > task.threshold())
+                        .groupTypes(job.groupTypes()).groupKeywords(job.groupKeywords()).parentCount(job.poi().count()));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * 构造格网第一页的Job
+     *
+     * @param task     task对象
+     * @param bounds   格网范围
+     * @param types    poi类型
+     * @param keywords poi关键字
+     * @param probe    是否仅探测数量，探测请求每页只取一条数据且不请求扩展字段
+     * @return 格网第一页的Job
+     */
+    private Job newGridJob(Task task, Double[] bounds, String types, String keywords, boolean probe) {
+        return new Job(null, task.id(), bounds, types, keywords, 1, probe ? 1 : configHolder.SIZE)
+                .probe(probe);
+    }
+
+    /**
+     * 将格网的查询按poi子类型拆分，每种类型替换为其下一级类型，无下一级类型的保持不变
+     *
+     * @param job  空间上无法继续切分的格网
+     * @param task task对象
+     * @return 按类型拆分后的第一页Job，未指定类型或所有类型均无法继续拆分时返回空列表
+     */
+    private List<Job> partitionByType(Job job, Task task) {
+        if (job.types() == null || job.types().trim().isEmpty()) {
+            // 未指定类型时不按类型拆分，否则查询会扩展为所有大类
+            return Collections.emptyList();
+        }
+        List<String> types = new ArrayList<>();
+        boolean expanded = false;
+        for (String type : job.types().split("\\|")) {
+            List<String> children = poiCategoryService.getPoiCategoryChildren(type);
+            if (children.isEmpty()) {
+                types.add(type);
+            } else {
+                types.addAll(children);
+                expanded = true;
+            }
+        }
+        if (!expanded) {
+            return Collections.emptyList();
+        }
+        return types.stream()
+                .map(type -> newGridJob(task, job.bounds(), type, job.keywords(), true)
+                        .groupTypes(job.groupTypes()).groupKeywords(job.groupKeywords()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 在指定线程池中派发一个异步job，job返回后放入结果队列
+     *
+     * @param executorService 派发线程池，等待令牌和并发许可时占用其线程
+     * @param job             待执行的job
+     * @param inFlight        已派发但尚未返回的job
+     * @param results         结果队列
+     */
+    private void dispatchJob(ExecutorService executorService, Job job, Set<Job> inFlight, BlockingQueue<Job> results) {
+        inFlight.add(job);
+        executorService.execute(() -> executeJobAsync(job).thenAccept(results::offer));
+    }
+
+    /**
+     * 生成格网尚未爬取的页面Job，即第二页往后的Job，探测得到的格网从第一页开始
      *
-     * @param analysisGrid 存储job的容器
+     * @param grid 数量未超出阈值的格网
      * @return 生成的Job
      */
-    private List<Job> generateJobsAfterSecondPage(List<Job> analysisGrid) {
+    private List<Job> generatePageJobs(Job grid) {
         List<Job> jobs = new ArrayList<>();
-        for (Job firstPageJob : analysisGrid) {
-            int total = firstPageJob.poi().count();
-            int size = firstPageJob.size();
-            int taskNum = (int) Math.ceil(total * 1.0 / size);
-            for (int page = 2; page <= taskNum; page++) {
-                Job job = new Job(null, firstPageJob.taskId(), firstPageJob.bounds(), firstPageJob.types(), firstPageJob.keywords(), page, firstPageJob.size());
-                job.poiExpectedCount(page == taskNum ? total - size * (taskNum - 1) : size);
-                jobs.add(job);
-            }
+        int total = grid.poi().count();
+        int size = configHolder.SIZE;
+        int taskNum = (int) Math.ceil(total * 1.0 / size);
+        for (int page = grid.probe() ? 1 : 2; page <= taskNum; page++) {
+            Job job = new Job(null, grid.taskId(), grid.bounds(), grid.types(), grid.keywords(), page, size);
+            job.poiExpectedCount(page == taskNum ? total - size * (taskNum - 1) : size);
+            jobs.add(job);
         }
-        // 保存未爬取的其他job
-        jobService.saveBatch(BeanUtils.jobs2JobPos(jobs));
         return jobs;
     }
 
     /**
-     * 重试，默认重试三次
+     * 将job派发至爬取线程池，与切分共享限流器
+     *
+     * @param jobs     待爬取的job
+     * @param pipeline 切分与爬取流水线
+     * @throws NoTryAgainException 线程池已关闭（任务被停止）时，抛出该异常
+     */
+    private void dispatchPageJobs(List<Job> jobs, PagePipeline pipeline) throws NoTryAgainException {
+        for (Job job : jobs) {
+            pipeline.dispatchedCount++;
+            try {
+                dispatchJob(executorService, job, pipeline.crawling, pipeline.crawled);
+            } catch (RejectedExecutionException e) {
+                throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e);
+            }
+        }
+    }
+
+    /**
+     * 处理流水线中已返回的job，并分批写入数据库
+     * <p>
+     * 失败的job以失败状态写入，由后续爬取阶段重试
+     *
+     * @param pipeline 切分与爬取流水线
+     * @param task     task对象
+     * @param waitAll  是否等待所有已派发的job返回
+     */
+    private void collectCrawledPages(PagePipeline pipeline, Task task, boolean waitAll) throws NoTryAgainException {
+        try {
+            while (!pipeline.crawling.isEmpty()) {
+                Job job = waitAll ? pipeline.crawled.take() : pipeline.crawled.poll();
+                if (job == null) break;
+                pipeline.crawling.remove(job);
+                if (job.jobStatus() != JobStatus.SUCCESS) {
+                    if (job.noTryAgainErrorCode() != null) {
+                        throw new NoTryAgainException(job.noTryAgainErrorCode());
+                    }
+                } else {
+                    statistics(job, task);
+                    pipeline.succeededCount++;
+                }
+                pipeline.cached.add(job);
+                if (pipeline.cached.size() >= PagePipeline.SAVE_THRESHOLD) {
+                    saveCrawledPages(pipeline, task);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e);
+        }
+        if (waitAll) {
+            saveCrawledPages(pipeline, task);
+        }
+    }
+
+    private void saveCrawledPages(PagePipeline pipeline, Task task) {
+        if (pipeline.cached.isEmpty()) {
+            return;
+        }
+        appendMessage("已执行任务：" + pipeline.succeededCount + "/" + pipeline.dispatchedCount
+                + "，当前并发数：" + configHolder.concurrencyLimiter.currentLimit());
+        taskService.updateById(task.toTaskPo());
+        recordKeyUsage();
+        jobService.saveBatch(BeanUtils.jobs2JobPos(pipeline.cached));
+        poiService.saveBatch(BeanUtils.jobs2PoiPos(
+                pipeline.cached.stream()
+                        .filter(job -> job.jobStatus().equals(JobStatus.SUCCESS))
+                        .collect(Collectors.toList()), configHolder.extension.equals("all")));
+        pipeline.cached.clear();
+    }
+
+    /**
+     * 爬取所有未完成的job，失败的job在本轮爬取中按退避时间重新派发，默认每个job最多重试三次
      *
      * @param task       task对象
-     * @param retryTimes 重试次数
+     * @param retryTimes 每个job的最大重试次数
      * @return 爬到的poi数据
      */
     private List<POI.Info> getPoiOfJobsWithReTry(Task task, int retryTimes) throws NoTryAgainException {
         List<Job> jobs = Collections.unmodifiableList(BeanUtils.jobPos2Jobs((jobService.listUnFinished())));
         int jobCount = jobService.count();
-        int i = 0;
-        while (configHolder.hasStart) {
-            if (i != 0) {
-                appendMessage("正在重试：第" + i + "次");
-            }
-            configHolder.haveSavedUnfinishedJobs = false;
-            spiderPoiOfJobs(jobs, task, jobCount);
-            if (!configHolder.hasStart) {
-                return BeanUtils.poiPo2PoiInfo(poiService.list(), configHolder.extension.equals("all"));
-            }
-            List<Job> newJobs = Collections.unmodifiableList(BeanUtils.jobPos2Jobs(jobService.listUnFinished()));
-            if (newJobs.size() == 0) {
-                task.taskStatus(TaskStatus.Success);
-                break;
-            }
-            appendMessage((i == 0 ? "初次爬取结果" : "第" + i + "次重试结果") + "：总计" + jobCount + "个任务，其中已完成" + (jobCount - newJobs.size()) + "个，失败任务" + newJobs.size() + "个");
-            if (i == retryTimes) {
-                List<JobPo> unFinishedJobs = jobService.listUnFinished();
-                appendMessage("已重试三次" + "重试失败，还有" + unFinishedJobs.size() + "个Job未爬取");
-                appendMessage("请重新点击执行，尝试爬取，或放弃尝试");
-                task.taskStatus(TaskStatus.Some_Failed);
-                break;
-            }
-            jobs = newJobs;
-            i++;
+        configHolder.haveSavedUnfinishedJobs = false;
+        spiderPoiOfJobs(jobs, task, jobCount, retryTimes);
+        if (!configHolder.hasStart) {
+            return BeanUtils.poiPo2PoiInfo(poiService.list(), configHolder.extension.equals("all"));
+        }
+        int unFinishedCount = jobService.countUnFinished();
+        if (unFinishedCount == 0) {
+            task.taskStatus(TaskStatus.Success);
+        } else {
+            appendMessage("爬取结果：总计" + jobCount + "个任务，其中已完成" + (jobCount - unFinishedCount) + "个，失败任务" + unFinishedCount + "个");
+            appendMessage("每个任务已重试" + retryTimes + "次，还有" + unFinishedCount + "个Job未爬取");
+            appendMessage("请重新点击执行，尝试爬取，或放弃尝试");
+            task.taskStatus(TaskStatus.Some_Failed);
         }
         return BeanUtils.poiPo2PoiInfo(poiService.list(), configHolder.extension.equals("all"));
     }
 
     /**
      * 构造异步任务，并行爬取
+     * <p>
+     * 请求通过异步客户端发出，进行中的请求不占用线程，并发数仅受令牌桶和并发控制器限制；
+     * 可重试的失败不等待本轮结束，按退避时间重新派发，与其余job同时进行
      *
      * @param unFinishedJobs 待爬取的job
      * @param task           task对象
+     * @param retryTimes     每个job的最大重试次数
      */
-    private void spiderPoiOfJobs(List<Job> unFinishedJobs, Task task, int allJobsCount) throws NoTryAgainException {
-        int finishedJobsCount = allJobsCount - unFinishedJobs.size();
+    private void spiderPoiOfJobs(List<Job> unFinishedJobs, Task task, int allJobsCount, int retryTimes) throws NoTryAgainException {
         // 缓存机制
         int saveThreshold = 50;
         List<Job> cached = new ArrayList<>();
-        ArrayList<Job> unFinishedJob = new ArrayList<>(unFinishedJobs);
+        Set<Job> unFinishedJob = new LinkedHashSet<>(unFinishedJobs);
+        BlockingQueue<Job> finishedJobs = new LinkedBlockingQueue<>();
+        planKeys(unFinishedJobs);
 
-        // 构造异步job
+        // 每个job提交为单独的任务，使用虚拟线程时每个job各占一个线程等待令牌和并发许可，
+        // 使用平台线程池时同时等待的job数不超过线程数；等待时均不阻塞结果的处理。任务停止后的job直接以失败返回
         for (Job job : unFinishedJobs) {
-            completionService.submit(() -> {
-                try {
-                    executeJob(job);
-                    return job;
-                } catch (TryAgainException e) {
-                    synchronized (this) {
-                        // 执行完job对爬取结果的处理
-                        // 如果主动停止，则不输出
-                        if (configHolder.hasStart) appendMessage(e.getMessage());
-                        job.jobStatus(JobStatus.Failed);
-                        job.tryAgainErrorCode(e.tryAgainError());
-                        return job;
-                    }
-                } catch (NoTryAgainException e) {
-                    synchronized (this) {
-                        // 执行完job对爬取结果的处理
-                        // 如果主动停止，则不输出
-                        if (configHolder.hasStart) appendMessage(e.getMessage());
-                        // 暂定本次爬取
-                        analysis(false);
-                        job.jobStatus(JobStatus.Failed);
-                        job.noTryAgainErrorCode(e.noTryAgainError());
-                        return job;
-                    }
-                }
-            });
+            try {
+                executorService.execute(() -> executeJobAsync(job).thenAccept(finishedJobs::offer));
+            } catch (RejectedExecutionException e) {
+                // 任务已停止
+                finishedJobs.offer(jobFailed(job, new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e)));
+                break;
+            }
         }
 
-        // 阻塞获取
+        // job返回后立即处理，每个请求都有各自的超时时间，单个慢请求不会阻塞其他结果
         try {
-            int tryTimes = (int) (20 / 0.5);
-            for (int i = 0; i < unFinishedJobs.size(); i++) {
-                // 执行一个爬取job
-                for (int j = 0; j < tryTimes; j++) {
-                    Future<Job> future = completionService.poll(500, TimeUnit.MILLISECONDS);
-                    if (future != null) {
-                        Job job = future.get();
-                        if (job.jobStatus() != JobStatus.SUCCESS) {
-                            if (job.noTryAgainErrorCode() != null) {
-                                throw new NoTryAgainException(job.noTryAgainErrorCode());
-                            }
-                        } else {
-                            statistics(job, task);
-                            appendMessage("已执行任务：" + (finishedJobsCount + i + 1) + "/" + allJobsCount);
-                        }
-                        cached.add(job);
-                        unFinishedJob.remove(job);
-                        break;
+            int pending = unFinishedJobs.size();
+            while (pending > 0) {
+                Job job = finishedJobs.take();
+                if (job.jobStatus() != JobStatus.SUCCESS) {
+                    if (job.noTryAgainErrorCode() != null) {
+                        throw new NoTryAgainException(job.noTryAgainErrorCode());
                     }
-                    if ((j + 1) == tryTimes) {
-                        throw new TimeoutException();
+                    if (job.retryTimes() < retryTimes) {
+                        retryLater(job, finishedJobs);
+                        continue;
                     }
+                } else {
+                    statistics(job, task);
                 }
-                if ((i + 1) % saveThreshold == 0 || (i + 1) == unFinishedJobs.size()) {
+                pending--;
+                if (job.jobStatus() == JobStatus.SUCCESS) {
+                    appendMessage("已执行任务：" + (allJobsCount - pending) + "/" + allJobsCount
+                            + "，当前并发数：" + configHolder.concurrencyLimiter.currentLimit());
+                }
+                cached.add(job);
+                unFinishedJob.remove(job);
+                if (cached.size() >= saveThreshold || pending == 0) {
                     appendMessage("正在写入数据，请稍等...");
                     taskService.updateById(task.toTaskPo());
+                    recordKeyUsage();
                     jobService.updateBatch(BeanUtils.jobs2JobPos(cached));
                     poiService.saveBatch(BeanUtils.jobs2PoiPos(
                             cached.stream()
-                                    .filter(job -> job.jobStatus().equals(JobStatus.SUCCESS))
+                                    .filter(item -> item.jobStatus().equals(JobStatus.SUCCESS))
                                     .collect(Collectors.toList()), configHolder.extension.equals("all")));
                     cached.clear();
                 }
             }
-        } catch (TimeoutException e) {
-//            e.printStackTrace();
-            saveUnFinishedJob(task, cached, unFinishedJob);
-        } catch (NoTryAgainException | InterruptedException | ExecutionException e) {
+        } catch (NoTryAgainException | InterruptedException e) {
 //            e.printStackTrace();
             saveUnFinishedJob(task, cached, unFinishedJob);
             throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e.getMessage());
@@ -956,6 +1332,94 @@ public class POIViewModel {
         }
     }
 
+    /**
+     * 在退避时间后重新派发失败的job，结果放入同一结果队列
+     *
+     * @param job     可重试的失败job
+     * @param results 结果队列
+     */
+    private void retryLater(Job job, BlockingQueue<Job> results) {
+        long delay = retryDelayMillis(job.tryAgainErrorCode(), job.retryTimes());
+        job.retryTimes(job.retryTimes() + 1);
+        job.tryAgainErrorCode(null);
+        scheduler.schedule(() -> {
+            try {
+                executorService.execute(() -> executeJobAsync(job).thenAccept(results::offer));
+            } catch (RejectedExecutionException e) {
+                // 任务已停止
+                results.offer(jobFailed(job, new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e)));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 根据错误类型计算重试前的退避时间，指数增长并加入随机抖动，避免失败的请求同时重试
+     * <p>
+     * 需要换key的错误立即重试，QPS超限的错误退避更久，等待令牌桶和并发控制器恢复
+     *
+     * @param errorCode  失败原因
+     * @param retryTimes 已重试的次数
+     * @return 退避时间，毫秒
+     */
+    private long retryDelayMillis(TryAgainErrorCode errorCode, int retryTimes) {
+        if (TryAgainErrorCode.TRY_OTHER_KEY.equals(errorCode)) {
+            return 0;
+        }
+        long base = errorCode != null && configHolder.errorCodeHashSet.contains(errorCode)
+                ? ConfigHolder.THROTTLE_RETRY_BASE_MILLIS : ConfigHolder.RETRY_BASE_MILLIS;
+        return BackoffUtil.delayMillis(base, ConfigHolder.MAX_RETRY_DELAY_MILLIS, retryTimes, ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * 按各key今日剩余额度分配job，剩余额度多的key分得更多job，避免部分key提前用完额度
+     * <p>
+     * 超出剩余总额度的job不预先分配，执行时由key池选择
+     *
+     * @param jobs 待爬取的job
+     */
+    private void planKeys(List<Job> jobs) {
+        recordKeyUsage();
+        Map<String, Integer> learnedQuota = keyQuotaService.learnedDailyQuota();
+        Map<String, Integer> usedToday = new HashMap<>();
+        for (KeyQuotaPo keyQuotaPo : keyQuotaService.list(quotaDate())) {
+            usedToday.put(keyQuotaPo.amapKey(), keyQuotaPo.usedCount());
+        }
+        Map<String, Integer> remaining = new LinkedHashMap<>();
+        long totalRemaining = 0;
+        for (String key : configHolder.keyPool.keys()) {
+            int left = Math.max(0, learnedQuota.getOrDefault(key, configHolder.dailyQuota) - usedToday.getOrDefault(key, 0));
+            remaining.put(key, left);
+            totalRemaining += left;
+        }
+        // 平滑加权轮询：按剩余额度的比例交替分配，避免连续的job集中在同一个key上，受限于单个key的QPS
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        remaining.forEach((key, left) -> {
+            if (left > 0) weights.put(key, left);
+        });
+        Map<String, Long> current = new HashMap<>();
+        for (Job job : jobs) {
+            String key = null;
+            long totalWeight = 0;
+            for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+                long value = current.merge(weight.getKey(), (long) weight.getValue(), Long::sum);
+                totalWeight += weight.getValue();
+                if (key == null || value > current.get(key)) key = weight.getKey();
+            }
+            job.plannedKey(key);
+            if (key == null) continue;
+            current.put(key, current.get(key) - totalWeight);
+            remaining.put(key, remaining.get(key) - 1);
+            if (remaining.get(key) <= 0) {
+                weights.remove(key);
+                current.remove(key);
+            }
+        }
+        appendMessage("key今日剩余额度约" + totalRemaining + "次，待爬取任务" + jobs.size() + "个");
+        if (totalRemaining < jobs.size()) {
+            appendMessage("剩余额度可能不足，额度用完后任务将暂停，并在额度重置后自动继续");
+        }
+    }
+
     /**
      * 保存未完成的Jobs
      *
@@ -963,7 +1427,7 @@ public class POIViewModel {
      * @param cached        缓存容器
      * @param unFinishedJob 未完成的Job
      */
-    private synchronized void saveUnFinishedJob(Task task, List<Job> cached, ArrayList<Job> unFinishedJob) {
+    private synchronized void saveUnFinishedJob(Task task, List<Job> cached, Collection<Job> unFinishedJob) {
         if (configHolder.haveSavedUnfinishedJobs) {
             return;
         }
@@ -973,6 +1437,7 @@ public class POIViewModel {
             cached.add(unJob);
         }
         taskService.updateById(task.toTaskPo());
+        recordKeyUsage();
         jobService.updateBatch(BeanUtils.jobs2JobPos(cached));
         poiService.saveBatch(BeanUtils.jobs2PoiPos(
                 cached.stream()
@@ -986,41 +1451,268 @@ public class POIViewModel {
     }
 
     /**
-     * 执行一个Job
+     * 异步执行一个Job，请求进行中不占用线程
+     * <p>
+     * 返回的 future 总是正常完成，失败信息记录在 job 中：执行过程中出现任何未预料的异常（例如读取缓存时的数据库异常），
+     * job 都以可重试的失败返回，保证等待结果的调用方不会永远阻塞
+     *
+     * @param job 等待执行的job
+     * @return 执行完毕的job
+     */
+    private CompletableFuture<Job> executeJobAsync(Job job) {
+        CompletableFuture<Job> future;
+        try {
+            future = sendJobAsync(job);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.handle((result, throwable) -> {
+            if (throwable == null) {
+                return result;
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            log.warn("执行job时出现异常", cause);
+            return jobFailed(job, new TryAgainException(TryAgainErrorCode.UNEXPECTED_ERROR, cause.toString()));
+        });
+    }
+
+    /**
+     * 发出Job的请求
+     * <p>
+     * 调用线程仅在等待令牌和并发许可时阻塞；命中响应缓存、或加入参数相同的进行中请求时，不占用 key、并发许可和令牌
      *
      * @param job 等待执行的job
-     * @throws TryAgainException 如果爬取失败，抛出该异常
+     * @return 执行完毕的job
      */
-    private void executeJob(Job job) throws NoTryAgainException, TryAgainException {
+    private CompletableFuture<Job> sendJobAsync(Job job) {
         double left = job.bounds()[0], bottom = job.bounds()[1], right = job.bounds()[2], top = job.bounds()[3];
         String polygon = left + "," + top + "|" + right + "," + bottom;
-        String key = getAMapKey();
-        job.poi(getPoi(key, polygon, job.keywords(), job.types(), job.page(), job.size()));
-        job.jobStatus(JobStatus.SUCCESS); // 设置执行状态为Success
+        String extension = job.probe() ? "base" : configHolder.extension;
+        if (configHolder.hasStart) {
+            POI cached = asyncMapDao.getCachedPoi(polygon, job.keywords(), job.types(), extension, job.page(), job.size());
+            if (cached != null) {
+                job.poi(cached);
+                job.jobStatus(JobStatus.SUCCESS);
+                return CompletableFuture.completedFuture(job);
+            }
+            CompletableFuture<POI> shared = asyncMapDao.joinPoiAsync(polygon, job.keywords(), job.types(), extension, job.page(), job.size());
+            if (shared != null) {
+                return shared.thenApply(poi -> {
+                    if (poi == null) {
+                        // 共享的请求未成功，稍后重试时自行发出请求
+                        return jobFailed(job, new TryAgainException(TryAgainErrorCode.SHARED_REQUEST_FAILED));
+                    }
+                    job.poi(poi);
+                    job.jobStatus(JobStatus.SUCCESS);
+                    return job;
+                });
+            }
+        }
+        String key;
+        try {
+            if (!configHolder.hasStart) {
+                throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK);
+            }
+            key = getAMapKey(job);
+            // 先等待令牌再占用并发许可，限流时许可不会被等待令牌的线程占用，并发数只反映进行中的请求
+            configHolder.rateLimiter.acquire(key);
+            configHolder.concurrencyLimiter.acquire();
+        } catch (NoTryAgainException e) {
+            return CompletableFuture.completedFuture(jobFailed(job, e));
+        } catch (InterruptedException e) {
+            return CompletableFuture.completedFuture(jobFailed(job, new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK, e)));
+        }
+        // 先成功的请求（或所有请求均失败、或超时）决定job的结果，其余请求随之取消
+        Race race = new Race();
+        sendAttempt(key, polygon, job, extension, race);
+        long hedgeDelay = configHolder.latencyTracker.percentileMillis();
+        ScheduledFuture<?> hedge = ConfigHolder.HEDGING && hedgeDelay >= 0
+                ? scheduler.schedule(() -> sendHedge(key, polygon, job, extension, race),
+                Math.max(ConfigHolder.MIN_HEDGE_DELAY_MILLIS, hedgeDelay), TimeUnit.MILLISECONDS)
+                : null;
+        ScheduledFuture<?> deadline = scheduler.schedule(() -> race.winner.complete(new Attempt(key, null, new TimeoutException())),
+                ConfigHolder.REQUEST_DEADLINE_SECONDS, TimeUnit.SECONDS);
+        return race.winner.thenApply(attempt -> {
+            deadline.cancel(false);
+            if (hedge != null) hedge.cancel(false);
+            try {
+                if (attempt.throwable instanceof TimeoutException) {
+                    throw new TryAgainException(TryAgainErrorCode.TIME_OUT);
+                }
+                job.poi(checkPoi(attempt.key, attempt.poi));
+            } catch (TryAgainException e) {
+                return jobFailed(job, e);
+            } catch (NoTryAgainException e) {
+                return jobFailed(job, e);
+            }
+            configHolder.concurrencyLimiter.onSuccess();
+            job.jobStatus(JobStatus.SUCCESS);
+            return job;
+        });
+    }
+
+    /**
+     * 一次请求的结果
+     */
+    private static class Attempt {
+        private final String key;
+        private final POI poi;
+        private final Throwable throwable;
+
+        Attempt(String key, POI poi, Throwable throwable) {
+            this.key = key;
+            this.poi = poi;
+            this.throwable = throwable;
+        }
+
+        /**
+         * 是否为可用的结果，即 infocode 为 10000 的响应
+         */
+        boolean isUsable() {
+            return throwable == null && poi != null && Integer.valueOf(10000).equals(poi.infoCode());
+        }
+    }
+
+    /**
+     * 同一job的原请求与对冲请求
+     * <p>
+     * 可用的结果立即决定job的结果；失败的请求仅在其余请求也都失败后才决定结果，
+     * 避免使用另一个key、快速失败的对冲请求取消本可成功的原请求
+     */
+    private static class Race {
+        private final CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        // 已发出且尚未返回的请求数
+        private int pending = 0;
+
+        /**
+         * 发出请求前调用
+         *
+         * @return 结果已确定时返回 false，不应再发出请求
+         */
+        synchronized boolean start() {
+            if (winner.isDone()) {
+                return false;
+            }
+            pending++;
+            return true;
+        }
+
+        /**
+         * 请求返回后调用
+         */
+        void finish(Attempt attempt) {
+            boolean decided;
+            synchronized (this) {
+                decided = --pending == 0 || attempt.isUsable();
+            }
+            if (decided) {
+                winner.complete(attempt);
+            }
+        }
+    }
+
+    /**
+     * 使用指定key发出请求，调用前需已获取该key的令牌和一个并发许可，请求结束后归还并发许可
+     *
+     * @param key       高德key
+     * @param polygon   查询范围
+     * @param job       等待执行的job
+     * @param extension 返回结果控制
+     * @param race      job的各次请求，结果确定后取消本次请求
+     */
+    private void sendAttempt(String key, String polygon, Job job, String extension, Race race) {
+        if (!race.start()) {
+            configHolder.concurrencyLimiter.release();
+            return;
+        }
+        CompletableFuture<Attempt> winner = race.winner;
+        long begin = configHolder.keyPool.begin(key);
+        CompletableFuture<POI> request;
+        try {
+            request = asyncMapDao.getPoiAsync(key, polygon, job.keywords(), job.types(), extension, job.page(), job.size());
+        } catch (RuntimeException e) {
+            // 同步抛出的异常同样按请求失败处理，保证归还并发许可
+            request = new CompletableFuture<>();
+            request.completeExceptionally(e);
+        }
+        CompletableFuture<POI> sent = request;
+        sent.whenComplete((poi, throwable) -> {
+            configHolder.concurrencyLimiter.release();
+            if (throwable != null && winner.isDone()) {
+                // 超时计为失败；被先返回的请求取消时，不记录耗时与结果
+                if (winner.join().throwable instanceof TimeoutException) {
+                    configHolder.keyPool.end(key, begin, false);
+                } else {
+                    configHolder.keyPool.cancel(key);
+                }
+                return;
+            }
+            configHolder.keyPool.end(key, begin, poi != null && Integer.valueOf(10000).equals(poi.infoCode()));
+            if (throwable == null) configHolder.latencyTracker.record(System.nanoTime() - begin);
+            race.finish(new Attempt(key, poi, throwable));
+        });
+        winner.whenComplete((attempt, throwable) -> sent.cancel(true));
+    }
+
+    /**
+     * 请求耗时超过近期耗时的分位数仍未返回时，使用另一个key发出相同的请求
+     * <p>
+     * 仅在另一个key有空闲令牌且并发数未达上限时发出，不等待，因此不会超出限流
+     */
+    private void sendHedge(String primaryKey, String polygon, Job job, String extension, Race race) {
+        if (race.winner.isDone() || !configHolder.hasStart) return;
+        String key = configHolder.keyPool.select();
+        if (primaryKey.equals(key)) key = configHolder.keyPool.select();
+        if (key == null || primaryKey.equals(key)) return;
+        if (!configHolder.concurrencyLimiter.tryAcquire()) return;
+        if (!configHolder.rateLimiter.tryAcquire(key)) {
+            configHolder.concurrencyLimiter.release();
+            return;
+        }
+        sendAttempt(key, polygon, job, extension, race);
+    }
+
+    private synchronized Job jobFailed(Job job, TryAgainException e) {
+        // 如果主动停止，则不输出
+        if (configHolder.hasStart) appendMessage(e.getMessage());
+        if (TryAgainErrorCode.TRY_OTHER_KEY.equals(e.tryAgainError())) {
+            // 预先分配的key出错，重试时改为从key池中选择
+            job.plannedKey(null);
+        }
+        job.jobStatus(JobStatus.Failed);
+        job.tryAgainErrorCode(e.tryAgainError());
+        return job;
+    }
+
+    private synchronized Job jobFailed(Job job, NoTryAgainException e) {
+        // 如果主动停止，则不输出
+        if (configHolder.hasStart) appendMessage(e.getMessage());
+        // 暂定本次爬取
+        analysis(false);
+        job.jobStatus(JobStatus.Failed);
+        job.noTryAgainErrorCode(e.noTryAgainError());
+        return job;
     }
 
     /**
-     * 获取单个Key，每个key的均匀使用
+     * 获取单个Key，预先分配给job的key仍在池中且未被熔断时优先使用，否则选择进行中请求少、响应快、错误率低的key
      *
+     * @param job 等待执行的job
      * @return 选定的key值
      * @throws NoTryAgainException 如果未获取到key（例如没有可选key），抛出该异常
      */
-    private synchronized String getAMapKey() throws NoTryAgainException {
-        if (configHolder.aMapKeys.isEmpty()) {
-            return null;
+    private String getAMapKey(Job job) throws NoTryAgainException {
+        if (job.plannedKey() != null && configHolder.keyPool.isAvailable(job.plannedKey())) {
+            return job.plannedKey();
         }
-        String key = configHolder.aMapKeys.poll();
+        String key = configHolder.keyPool.select();
         if (key == null) {
             throw new NoTryAgainException(NoTryAgainErrorCode.KEY_POOL_RUN_OUT_OF);
         }
-        configHolder.aMapKeys.offer(key);
         return key;
     }
 
-    private synchronized boolean removeKey(String key) {
-        return configHolder.aMapKeys.remove(key);
-    }
-
     /**
      * 统计相关指标
      *
@@ -1042,35 +1734,14 @@ public class POIViewModel {
     }
 
     /**
-     * 爬取单个Job的Poi
+     * 检查接口返回的Poi，处理错误码
      *
-     * @param key      key
-     * @param polygon  矩形范围
-     * @param keywords 关键字
-     * @param types    类型
-     * @param page     页数
-     * @param size     单页数据量
-     * @return 爬取到的poi对象
-     * @throws TryAgainException 如果爬取失败，则抛出该异常
+     * @param key 本次请求使用的key
+     * @param poi 接口返回的poi对象
+     * @return 检查通过的poi对象
+     * @throws TryAgainException 如果返回可重试的错误，则抛出该异常
      */
-    private POI getPoi(String key, String polygon, String keywords, String types, int page, int size) throws NoTryAgainException, TryAgainException {
-        if (!configHolder.hasStart) {
-            throw new NoTryAgainException(NoTryAgainErrorCode.STOP_TASK);
-        }
-        LocalDateTime startTime = LocalDateTime.now();//获取开始时间
-        POI poi = mapDao.getPoi(key, polygon, keywords, types, configHolder.extension, page, size);
-        LocalDateTime endTime = LocalDateTime.now(); //获取结束时间
-        int maxThreadNum = getMaxThreadNum(configHolder.qps, configHolder.aMapKeys.size());
-        int threadNum = Math.min(maxThreadNum, configHolder.threadNum);
-        int perExecuteTime = getPerExecuteTime(configHolder.aMapKeys.size(), threadNum, configHolder.qps, configHolder.threadNum * 1.0 / threadNum);
-        if (Duration.between(startTime, endTime).toMillis() < perExecuteTime) { // 严格控制每次执行perExecuteTime
-            try {
-                TimeUnit.MILLISECONDS.sleep(perExecuteTime - Duration.between(startTime, endTime).toMillis() + (long) (Math.log(configHolder.waitFactorForQps) * 50L));
-            } catch (InterruptedException e) {
-//                e.printStackTrace();
-            }
-        }
-
+    private POI checkPoi(String key, POI poi) throws NoTryAgainException, TryAgainException {
         // 异常情况处理
         if (poi == null || poi.infoCode() != 10000) {
             if (poi == null || poi.infoCode() == null || poi.status() == null || poi.info() == null) {
@@ -1080,28 +1751,33 @@ public class POIViewModel {
                 // 不可重试异常
                 NoTryAgainErrorCode noTryAgainErrorCode = NoTryAgainErrorCode.getError(poi.infoCode());
                 if (noTryAgainErrorCode != null) {
-                    synchronized (this) {
-                        // key额度用完，移除该key
-                        if (noTryAgainErrorCode.equals(NoTryAgainErrorCode.USER_DAILY_QUERY_OVER_LIMIT)) {
-                            NoTryAgainException noTryAgainException = new NoTryAgainException(NoTryAgainErrorCode.USER_DAILY_QUERY_OVER_LIMIT);
-                            if (configHolder.aMapKeys.contains(key)) {
-                                // 输出底层错误信息
-                                appendMessage(noTryAgainException.getMessage());
-                                removeKey(key);
-                            }
-                            // 如果还有可用key，则继续尝试，否则抛出不可重试异常
-                            if (configHolder.aMapKeys.size() != 0) {
-                                throw new TryAgainException(TryAgainErrorCode.TRY_OTHER_KEY, "无效key：" + key, noTryAgainException);
-                            }
+                    // key额度用完，移除该key
+                    if (noTryAgainErrorCode.equals(NoTryAgainErrorCode.USER_DAILY_QUERY_OVER_LIMIT)) {
+                        NoTryAgainException noTryAgainException = new NoTryAgainException(NoTryAgainErrorCode.USER_DAILY_QUERY_OVER_LIMIT);
+                        // 多个请求同时发现同一key额度用完时，仅移除成功的一方输出底层错误信息
+                        if (configHolder.keyPool.remove(key)) {
+                            appendMessage(noTryAgainException.getMessage());
+                            appendMessage(configHolder.keyPool.stats(key));
+                            recordKeyUsage();
+                            keyQuotaService.markExhausted(key, quotaDate());
+                        }
+                        // 如果还有可用key，则继续尝试，否则抛出不可重试异常
+                        if (!configHolder.keyPool.isEmpty()) {
+                            throw new TryAgainException(TryAgainErrorCode.TRY_OTHER_KEY, "无效key：" + key, noTryAgainException);
                         }
+                    } else if (CircuitBreaker.isKeyFailure(poi.infoCode()) && configHolder.keyPool.hasAvailableExcept(key)) {
+                        // 与key本身有关的错误，该key由熔断器暂停使用，换用其他key重试
+                        throw new TryAgainException(TryAgainErrorCode.TRY_OTHER_KEY, "key----" + key + "：" + noTryAgainErrorCode.description(),
+                                new NoTryAgainException(noTryAgainErrorCode));
                     }
                     throw new NoTryAgainException(noTryAgainErrorCode);
                 }
                 // 可重试异常
                 TryAgainErrorCode tryAgainErrorCode = TryAgainErrorCode.getError(poi.infoCode());
                 if (tryAgainErrorCode != null) {
-                    if (configHolder.errorCodeHashSet.contains(tryAgainErrorCode)) {
-                        configHolder.waitFactorForQps++;
+                    if (configHolder.errorCodeHashSet.contains(tryAgainErrorCode)
+                            && configHolder.concurrencyLimiter.onThrottle()) {
+                        appendMessage("QPS超限，并发数下调为" + configHolder.concurrencyLimiter.currentLimit());
                     }
                     throw new TryAgainException(tryAgainErrorCode);
                 }
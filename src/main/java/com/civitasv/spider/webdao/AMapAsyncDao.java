@@ -0,0 +1,40 @@
+package com.civitasv.spider.webdao;
+
+import com.civitasv.spider.model.Geocodes;
+import com.civitasv.spider.model.bo.POI;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 高德接口的异步版本，基于 OkHttp 的 enqueue，请求进行中不占用调用线程
+ * <p>
+ * 与 {@link AMapDao} 一致，网络异常时结果为 null
+ */
+public interface AMapAsyncDao {
+    CompletableFuture<Geocodes.Response> geocodingAsync(String key, String address, String city);
+
+    /**
+     * 发出 POI 请求，不读取缓存，需要缓存时先调用 {@link #getCachedPoi}；成功的结果写入缓存。
+     * 请求进行中时，参数相同的调用方可通过 {@link #joinPoiAsync} 加入
+     */
+    CompletableFuture<POI> getPoiAsync(String key, String polygon, String keywords, String types, String extensions, int page, int size);
+
+    /**
+     * 加入参数相同的进行中 POI 请求，不发出网络请求，因此无需 key
+     *
+     * @return 没有进行中的请求时返回 null；否则返回共享的结果，请求未成功时以 null 完成
+     */
+    CompletableFuture<POI> joinPoiAsync(String polygon, String keywords, String types, String extensions, int page, int size);
+
+    /**
+     * 读取 POI 请求的缓存，不发出网络请求
+     *
+     * @return 有效期内的缓存，不存在时返回 null
+     */
+    POI getCachedPoi(String polygon, String keywords, String types, String extensions, int page, int size);
+
+    /**
+     * 将暂存的缓存写入磁盘
+     */
+    void flushCache();
+}
@@ -3,31 +3,274 @@ package com.civitasv.spider.webdao.impl;
 import com.civitasv.spider.api.RetrofitAMapClient;
 import com.civitasv.spider.model.Geocodes;
 import com.civitasv.spider.model.bo.POI;
+import com.civitasv.spider.model.po.ResponseCachePo;
+import com.civitasv.spider.service.ResponseCacheService;
+import com.civitasv.spider.service.serviceImpl.ResponseCacheServiceImpl;
+import com.civitasv.spider.util.CircuitBreaker;
+import com.civitasv.spider.util.SingleFlight;
+import com.civitasv.spider.webdao.AMapAsyncDao;
 import com.civitasv.spider.webdao.AMapDao;
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
 import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 高德接口，请求前经过 {@link CircuitBreaker}，被熔断的 key 不发出请求，结果为 null
+ * <p>
+ * 除 key 外参数相同的请求同时进行时合并为一次请求，共享成功的结果；
+ * 成功的结果写入磁盘缓存，有效期内再次请求时直接读取缓存，不消耗 key 的额度
+ * （启动参数 -Dspider.cacheTtlHours 设置有效期，默认 24 小时，设为 0 关闭缓存）
+ */
+@Slf4j
+public class AMapDaoImpl implements AMapDao, AMapAsyncDao {
+    private final CircuitBreaker circuitBreaker = CircuitBreaker.getInstance();
+
+    // 所有实例共享，POI 爬取与地理编码中的相同请求均可合并
+    private static final SingleFlight<POI> poiFlights =
+            new SingleFlight<>(poi -> poi != null && Integer.valueOf(10000).equals(poi.infoCode()));
+    private static final SingleFlight<Geocodes.Response> geocodingFlights =
+            new SingleFlight<>(response -> response != null && "10000".equals(response.getInfocode()));
+
+    public static final String CACHE_TTL_PROPERTY = "spider.cacheTtlHours";
+    private static final long cacheTtlMillis = TimeUnit.HOURS.toMillis(Long.getLong(CACHE_TTL_PROPERTY, 24));
+    private static final ResponseCacheService responseCache = new ResponseCacheServiceImpl();
+    // 首次使用缓存时清理过期的缓存
+    private static final AtomicBoolean expiredDeleted = new AtomicBoolean(false);
+    private static final Gson gson = new Gson();
 
-public class AMapDaoImpl implements AMapDao {
     @Override
     public Geocodes.Response geocoding(String key, String address, String city) {
-        Call<Geocodes.Response> call = RetrofitAMapClient.getInstance().getAMapService().geocoding(key, address, city);
+        return await(geocodingAsync(key, address, city));
+    }
+
+    @Override
+    public POI getPoi(String key, String polygon, String keywords, String types, String extensions, int page, int size) {
+        POI cached = getCachedPoi(polygon, keywords, types, extensions, page, size);
+        if (cached != null) {
+            return cached;
+        }
+        return await(getPoiAsync(key, polygon, keywords, types, extensions, page, size));
+    }
+
+    @Override
+    public CompletableFuture<Geocodes.Response> geocodingAsync(String key, String address, String city) {
+        String cacheKey = cacheKey(CircuitBreaker.GEOCODING_ENDPOINT, geocodingParams(address, city));
+        Geocodes.Response cached = readCache(cacheKey, Geocodes.Response.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        String flightKey = String.join("|", address, city);
+        return geocodingFlights.execute(flightKey, () -> {
+            if (!circuitBreaker.tryAcquire(key, CircuitBreaker.GEOCODING_ENDPOINT)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Geocodes.Response> future = enqueue(RetrofitAMapClient.getInstance().getAMapService().geocoding(key, address, city));
+            future.whenComplete((response, throwable) -> {
+                Integer infoCode = geocodingInfoCode(response);
+                recordResult(key, CircuitBreaker.GEOCODING_ENDPOINT, future, infoCode);
+                if (Integer.valueOf(10000).equals(infoCode)) {
+                    writeCache(cacheKey, CircuitBreaker.GEOCODING_ENDPOINT, response);
+                }
+            });
+            return future;
+        });
+    }
+
+    @Override
+    public CompletableFuture<POI> getPoiAsync(String key, String polygon, String keywords, String types, String extensions, int page, int size) {
+        // 调用方已通过 getCachedPoi 查询过缓存，此处不再读取，仅写入成功的结果
+        String cacheKey = cacheKey(CircuitBreaker.POI_ENDPOINT, poiParams(polygon, keywords, types, extensions, page, size));
+        Supplier<CompletableFuture<POI>> call = () -> {
+            if (!circuitBreaker.tryAcquire(key, CircuitBreaker.POI_ENDPOINT)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<POI> future = enqueue(RetrofitAMapClient.getInstance().getAMapService().getPoi(key, polygon, keywords, types, extensions, page, size));
+            future.whenComplete((poi, throwable) -> {
+                Integer infoCode = poi == null ? null : poi.infoCode();
+                recordResult(key, CircuitBreaker.POI_ENDPOINT, future, infoCode);
+                if (Integer.valueOf(10000).equals(infoCode)) {
+                    writeCache(cacheKey, CircuitBreaker.POI_ENDPOINT, poi);
+                }
+            });
+            return future;
+        };
+        return poiFlights.lead(poiFlightKey(polygon, keywords, types, extensions, page, size), call);
+    }
+
+    @Override
+    public CompletableFuture<POI> joinPoiAsync(String polygon, String keywords, String types, String extensions, int page, int size) {
+        return poiFlights.join(poiFlightKey(polygon, keywords, types, extensions, page, size));
+    }
+
+    @Override
+    public POI getCachedPoi(String polygon, String keywords, String types, String extensions, int page, int size) {
+        return readCache(cacheKey(CircuitBreaker.POI_ENDPOINT, poiParams(polygon, keywords, types, extensions, page, size)), POI.class);
+    }
+
+    @Override
+    public void flushCache() {
+        if (cacheTtlMillis > 0) {
+            responseCache.flush();
+        }
+    }
+
+    private static String poiFlightKey(String polygon, String keywords, String types, String extensions, int page, int size) {
+        return String.join("|", polygon, keywords, types, extensions, String.valueOf(page), String.valueOf(size));
+    }
+
+    private static Map<String, String> poiParams(String polygon, String keywords, String types, String extensions, int page, int size) {
+        Map<String, String> params = new TreeMap<>();
+        params.put("polygon", polygon);
+        params.put("keywords", keywords);
+        params.put("types", types);
+        params.put("extensions", extensions);
+        params.put("page", String.valueOf(page));
+        params.put("offset", String.valueOf(size));
+        return params;
+    }
+
+    private static Map<String, String> geocodingParams(String address, String city) {
+        Map<String, String> params = new TreeMap<>();
+        params.put("address", address);
+        params.put("city", city);
+        return params;
+    }
+
+    /**
+     * 缓存键为接口名与按名称排序的请求参数（不含 key）的 SHA-1 摘要，不同 key 的相同请求共享缓存
+     */
+    private static String cacheKey(String endpoint, Map<String, String> sortedParams) {
+        StringBuilder request = new StringBuilder(endpoint).append('?');
+        for (Map.Entry<String, String> param : sortedParams.entrySet()) {
+            String value = param.getValue() == null ? "" : param.getValue().trim();
+            request.append(param.getKey()).append('=').append(value).append('&');
+        }
         try {
-            return call.execute().body();
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(request.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 读取有效期内的缓存，缓存关闭、不存在或读取失败时返回 null
+     */
+    private static <T> T readCache(String cacheKey, Class<T> clazz) {
+        if (cacheTtlMillis <= 0) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (expiredDeleted.compareAndSet(false, true)) {
+            responseCache.deleteExpired(now - cacheTtlMillis);
+        }
+        ResponseCachePo cached = responseCache.get(cacheKey, now - cacheTtlMillis);
+        if (cached == null) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(cached.body())), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, clazz);
+        } catch (IOException | RuntimeException e) {
+            log.warn("响应缓存读取失败：" + cacheKey, e);
+            return null;
+        }
+    }
+
+    /**
+     * 将成功的结果序列化为 json，经 gzip 压缩后写入缓存
+     */
+    private static void writeCache(String cacheKey, String endpoint, Object response) {
+        if (cacheTtlMillis <= 0) {
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write(gson.toJson(response).getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
-            e.printStackTrace();
+            log.warn("响应缓存压缩失败：" + cacheKey, e);
+            return;
+        }
+        responseCache.put(new ResponseCachePo(cacheKey, endpoint, body.toByteArray(), System.currentTimeMillis()));
+    }
+
+    /**
+     * 同步等待异步请求的结果，与异步版本一致，失败时返回 null
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CancellationException | CompletionException e) {
             return null;
         }
     }
 
-    @Override
-    public POI getPoi(String key, String polygon, String keywords, String types, String extensions, int page, int size) {
-        Call<POI> call = RetrofitAMapClient.getInstance().getAMapService().getPoi(key, polygon, keywords, types, extensions, page, size);
+    private void recordResult(String key, String endpoint, CompletableFuture<?> future, Integer infoCode) {
+        if (future.isCancelled()) {
+            circuitBreaker.onCancel(key, endpoint);
+        } else {
+            circuitBreaker.onResult(key, endpoint, infoCode);
+        }
+    }
+
+    private static Integer geocodingInfoCode(Geocodes.Response response) {
+        if (response == null || response.getInfocode() == null) {
+            return null;
+        }
         try {
-            return call.execute().body();
-        } catch (IOException e) {
-//            e.printStackTrace();
+            return Integer.valueOf(response.getInfocode());
+        } catch (NumberFormatException e) {
             return null;
         }
     }
+
+    /**
+     * 将请求交给 OkHttp 的 Dispatcher 异步执行
+     * <p>
+     * 若返回的 future 被取消，同时取消底层请求
+     */
+    private static <T> CompletableFuture<T> enqueue(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                future.complete(response.body());
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                future.complete(null);
+            }
+        });
+        return future;
+    }
 }
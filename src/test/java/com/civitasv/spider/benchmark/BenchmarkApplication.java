@@ -0,0 +1,235 @@
+package com.civitasv.spider.benchmark;
+
+import com.civitasv.spider.MainApplication;
+import com.civitasv.spider.api.RetrofitAMapClient;
+import com.civitasv.spider.api.RetrofitDataVClient;
+import com.civitasv.spider.controller.POIController;
+import com.civitasv.spider.helper.Enum.OutputType;
+import com.civitasv.spider.helper.Enum.TaskStatus;
+import com.civitasv.spider.helper.Enum.UserType;
+import com.civitasv.spider.model.bo.Task;
+import com.civitasv.spider.service.TaskService;
+import com.civitasv.spider.service.serviceImpl.PoiServiceImpl;
+import com.civitasv.spider.service.serviceImpl.TaskServiceImpl;
+import com.civitasv.spider.util.ControllerUtils;
+import com.civitasv.spider.util.MyBatisUtils;
+import com.civitasv.spider.webdao.impl.AMapDaoImpl;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * POI 爬取基准测试
+ * <p>
+ * 启动 {@link MockAMapServer}，将高德与 DataV 接口指向它，通过真实的 POI 爬取界面执行完整任务
+ * （获取边界、切分格网、爬取、入库与导出），结束后输出请求数/s、POI 数/s、请求耗时的 p50/p99 与峰值堆内存；
+ * 使用数据库的临时副本与临时输出文件夹，不影响已有任务，不消耗真实 key 的额度
+ * <p>
+ * 位于测试代码中，不随程序发布，运行方式：
+ * mvn test-compile exec:java -Dexec.mainClass=com.civitasv.spider.benchmark.BenchmarkApplication -Dexec.classpathScope=test
+ * <p>
+ * 启动参数（均可省略）：
+ * <ul>
+ *     <li>-Dbenchmark.pois：POI 总数，默认 200000</li>
+ *     <li>-Dbenchmark.hotspots：POI 热点数目，默认 12</li>
+ *     <li>-Dbenchmark.sigma：热点标准差与范围宽度之比，默认 0.03</li>
+ *     <li>-Dbenchmark.background：均匀分布的 POI 占比，默认 0.2</li>
+ *     <li>-Dbenchmark.seed：随机种子，默认 42</li>
+ *     <li>-Dbenchmark.keys：key 数目，默认 4</li>
+ *     <li>-Dbenchmark.userType：用户类型代码，决定每个 key 的 QPS，默认 2（企业开发者）</li>
+ *     <li>-Dbenchmark.dailyQuota：每个 key 每日的请求上限，默认 0（不限制）</li>
+ *     <li>-Dbenchmark.latencyMillis、-Dbenchmark.jitterMillis：模拟的请求延迟，默认 20、30</li>
+ *     <li>-Dbenchmark.threads：线程数目，默认为 QPS * key 数目</li>
+ *     <li>-Dbenchmark.threshold：阈值，默认 850</li>
+ *     <li>-Dbenchmark.format：输出格式代码，默认 0（csv）</li>
+ *     <li>-Dbenchmark.timeoutMinutes：超时时间，默认 60</li>
+ * </ul>
+ */
+public class BenchmarkApplication extends Application {
+    // 模拟行政区的范围与名称
+    private static final double[] BOUNDS = {116.0, 39.6, 116.8, 40.2};
+    private static final String AD_CODE = "110101";
+    private static final String AD_NAME = "模拟区";
+    // 与 POIViewModel 中各用户类型的 QPS 一致
+    private static final int[] QPS_OF_USER_TYPE = {20, 50, 300};
+    private static final String KEYWORDS = "餐饮";
+
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong peakHeap = new AtomicLong();
+    private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "benchmark-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private MockAMapServer server;
+    private long beginNanos;
+    private boolean running = false;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage stage) throws Exception {
+        UserType userType = UserType.getUserType(Integer.getInteger("benchmark.userType", 2));
+        int qps = QPS_OF_USER_TYPE[userType.code()];
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < Integer.getInteger("benchmark.keys", 4); i++) {
+            keys.add("benchmark" + i);
+        }
+        PoiDensityField field = new PoiDensityField(BOUNDS, AD_NAME,
+                Integer.getInteger("benchmark.pois", 200_000), Integer.getInteger("benchmark.hotspots", 12),
+                doubleProperty("benchmark.sigma", 0.03), doubleProperty("benchmark.background", 0.2),
+                Long.getLong("benchmark.seed", 42));
+        server = new MockAMapServer(field, keys, qps, Integer.getInteger("benchmark.dailyQuota", 0),
+                Long.getLong("benchmark.latencyMillis", 20), Long.getLong("benchmark.jitterMillis", 30));
+        server.start();
+
+        // 须在高德与 DataV 客户端初始化前设置
+        System.setProperty(RetrofitAMapClient.BASE_URL_PROPERTY, server.amapBaseUrl());
+        System.setProperty(RetrofitDataVClient.BASE_URL_PROPERTY, server.dataVBaseUrl());
+        if (System.getProperty(AMapDaoImpl.CACHE_TTL_PROPERTY) == null) {
+            System.setProperty(AMapDaoImpl.CACHE_TTL_PROPERTY, "0");
+        }
+        System.setProperty("spider.skipLargeTaskHint", "true");
+        RetrofitAMapClient.addInterceptor(this::timeRequest);
+        useDatabaseCopy();
+        Path outputDirectory = Files.createTempDirectory("amap-benchmark");
+
+        System.out.printf("模拟服务器：%s，POI 总数：%d，key 数目：%d，每个 key QPS：%d%n",
+                server.amapBaseUrl(), field.size(), keys.size(), qps);
+        System.out.println("输出文件夹：" + outputDirectory);
+
+        POIController controller = ControllerUtils.getControllerFactory().createController(POIController.class);
+        controller.show();
+        controller.keys.setText(String.join(",", keys));
+        controller.userType.getSelectionModel().select(userType);
+        controller.keywords.setText(KEYWORDS);
+        controller.types.setText("");
+        controller.threshold.setText(String.valueOf(Integer.getInteger("benchmark.threshold", 850)));
+        controller.threadNum.setText(String.valueOf(Integer.getInteger("benchmark.threads", qps * keys.size())));
+        controller.format.getSelectionModel().select(OutputType.getOutputType(Integer.getInteger("benchmark.format", 0)));
+        controller.outputDirectory.setText(outputDirectory.toString());
+        controller.tabs.getSelectionModel().select(0);
+        controller.adCode.setText(AD_CODE);
+
+        // 执行按钮在任务开始时禁用，结束时恢复
+        controller.execute.disabledProperty().addListener((observable, oldValue, disabled) -> {
+            if (disabled) {
+                running = true;
+            } else if (running) {
+                running = false;
+                long elapsedNanos = System.nanoTime() - beginNanos;
+                new Thread(() -> report(elapsedNanos, outputDirectory.toFile()), "benchmark-report").start();
+            }
+        });
+        monitor.schedule(() -> {
+            System.out.println("基准测试超时");
+            exit(1);
+        }, Long.getLong("benchmark.timeoutMinutes", 60), TimeUnit.MINUTES);
+
+        System.gc();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        monitor.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+        Platform.runLater(() -> {
+            beginNanos = System.nanoTime();
+            controller.execute();
+        });
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * 复制数据库到临时文件并改用该副本，放弃副本中未完成的任务，避免启动时弹窗询问
+     */
+    private static void useDatabaseCopy() throws IOException {
+        URL source = MainApplication.isDEV
+                ? MainApplication.class.getResource("db/poi.db")
+                : new File("app/assets/poi.db").toURI().toURL();
+        if (source == null) {
+            throw new IllegalStateException("找不到数据库文件");
+        }
+        Path copy = Files.createTempFile("amap-benchmark", ".db");
+        try (InputStream in = source.openStream()) {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+        copy.toFile().deleteOnExit();
+        MyBatisUtils.url = "jdbc:sqlite:" + copy.toAbsolutePath();
+
+        TaskService taskService = new TaskServiceImpl();
+        Task task;
+        while ((task = taskService.getUnFinishedTask()) != null) {
+            task.taskStatus(TaskStatus.Give_Up);
+            taskService.updateById(task.toTaskPo());
+        }
+    }
+
+    /**
+     * 记录每个高德请求从发出到收到响应的耗时
+     */
+    private Response timeRequest(Interceptor.Chain chain) throws IOException {
+        long begin = System.nanoTime();
+        try {
+            return chain.proceed(chain.request());
+        } finally {
+            latencies.add(System.nanoTime() - begin);
+        }
+    }
+
+    private void report(long elapsedNanos, File outputDirectory) {
+        double seconds = elapsedNanos / 1e9;
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        int pois = new PoiServiceImpl().list().size();
+        File[] outputs = outputDirectory.listFiles();
+        System.out.println("========== 基准测试结果 ==========");
+        System.out.printf("耗时：%.2fs%n", seconds);
+        System.out.printf("请求数：%d，%.1f 请求/s（成功 %d，QPS 超限 %d，额度或 key 错误 %d）%n",
+                sorted.length, sorted.length / seconds, server.served(), server.throttled(), server.rejected());
+        System.out.printf("入库 POI：%d，%.1f POI/s（服务器返回 %d，含重复）%n", pois, pois / seconds, server.poisServed());
+        System.out.printf("请求耗时 p50：%.1fms，p99：%.1fms%n", percentileMillis(sorted, 0.5), percentileMillis(sorted, 0.99));
+        System.out.printf("峰值堆内存：%.1fMB%n", peakHeap.get() / 1024.0 / 1024.0);
+        System.out.println("导出文件：" + (outputs == null ? 0 : outputs.length) + "个");
+        exit(0);
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private void exit(int status) {
+        server.stop();
+        Platform.exit();
+        System.exit(status);
+    }
+}
@@ -0,0 +1,350 @@
+package com.civitasv.spider.benchmark;
+
+import com.civitasv.spider.helper.Enum.NoTryAgainErrorCode;
+import com.civitasv.spider.helper.Enum.TryAgainErrorCode;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基准测试使用的高德与 DataV 模拟服务器，基于 JDK 自带的 HttpServer，仅监听本机地址
+ * <p>
+ * place/polygon 根据 {@link PoiDensityField} 返回查询范围内的 POI（不区分关键字与类型）；
+ * 与真实接口一致，对每个 key 按秒限制 QPS，超出返回 10020，超出每日额度返回 10044，未知 key 返回 10001；
+ * geocode/geo 返回范围内的一个固定坐标；DataV 的 bound/geojson 返回 POI 分布范围的矩形边界
+ */
+public class MockAMapServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PoiDensityField field;
+    // 为空时接受任意 key
+    private final Set<String> keys;
+    private final int qpsPerKey;
+    private final int dailyQuotaPerKey;
+    private final long latencyMillis;
+    private final long jitterMillis;
+
+    private final Map<String, KeyCounter> counters = new ConcurrentHashMap<>();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong poisServed = new AtomicLong();
+
+    /**
+     * @param field            POI 分布
+     * @param keys             有效的 key，为空时接受任意 key
+     * @param qpsPerKey        每个 key 每秒的请求上限，0 表示不限制
+     * @param dailyQuotaPerKey 每个 key 每日的请求上限，0 表示不限制
+     * @param latencyMillis    每个请求的基础延迟
+     * @param jitterMillis     在基础延迟上随机增加的最大延迟
+     * @throws IOException 端口无法绑定
+     */
+    public MockAMapServer(PoiDensityField field, Collection<String> keys, int qpsPerKey, int dailyQuotaPerKey,
+                          long latencyMillis, long jitterMillis) throws IOException {
+        this.field = field;
+        this.keys = new HashSet<>(keys);
+        this.qpsPerKey = qpsPerKey;
+        this.dailyQuotaPerKey = dailyQuotaPerKey;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-amap");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v3/place/polygon", exchange -> handle(exchange, this::polygon));
+        server.createContext("/v3/geocode/geo", exchange -> handle(exchange, this::geocoding));
+        server.createContext("/areas_v2/bound/geojson", exchange -> handle(exchange, this::boundary));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String amapBaseUrl() {
+        return baseUrl() + "/v3/";
+    }
+
+    public String dataVBaseUrl() {
+        return baseUrl() + "/areas_v2/";
+    }
+
+    private String baseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    /**
+     * 成功返回的高德请求数目
+     */
+    public long served() {
+        return served.get();
+    }
+
+    /**
+     * 因 QPS 超限被拒绝的请求数目
+     */
+    public long throttled() {
+        return throttled.get();
+    }
+
+    /**
+     * 因 key 无效或超出每日额度被拒绝的请求数目
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 返回的 POI 数目，含重复
+     */
+    public long poisServed() {
+        return poisServed.get();
+    }
+
+    private interface Handler {
+        JsonObject handle(Map<String, String> params);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            byte[] body = handler.handle(parseQuery(exchange.getRequestURI().getRawQuery())).toString()
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int i = pair.indexOf('=');
+            if (i < 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, i), "UTF-8"), URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    /**
+     * 检查 key 的有效性、每日额度与 QPS
+     *
+     * @return 错误响应，允许请求时返回 null
+     */
+    private JsonObject checkKey(String key) {
+        if (key == null || (!keys.isEmpty() && !keys.contains(key))) {
+            rejected.incrementAndGet();
+            return error(NoTryAgainErrorCode.INVALID_USER_KEY.code(), NoTryAgainErrorCode.INVALID_USER_KEY.name());
+        }
+        switch (counters.computeIfAbsent(key, k -> new KeyCounter()).tryAcquire(qpsPerKey, dailyQuotaPerKey)) {
+            case KeyCounter.OVER_DAILY_QUOTA:
+                rejected.incrementAndGet();
+                return error(NoTryAgainErrorCode.USER_DAILY_QUERY_OVER_LIMIT.code(), NoTryAgainErrorCode.USER_DAILY_QUERY_OVER_LIMIT.name());
+            case KeyCounter.OVER_QPS:
+                throttled.incrementAndGet();
+                return error(TryAgainErrorCode.CKQPS_HAS_EXCEEDED_THE_LIMIT.code(), TryAgainErrorCode.CKQPS_HAS_EXCEEDED_THE_LIMIT.name());
+            default:
+                served.incrementAndGet();
+                return null;
+        }
+    }
+
+    private static JsonObject error(int infoCode, String info) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "0");
+        response.addProperty("info", info);
+        response.addProperty("infocode", String.valueOf(infoCode));
+        return response;
+    }
+
+    private static JsonObject ok() {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "1");
+        response.addProperty("info", "OK");
+        response.addProperty("infocode", "10000");
+        return response;
+    }
+
+    private JsonObject polygon(Map<String, String> params) {
+        JsonObject error = checkKey(params.get("key"));
+        if (error != null) {
+            return error;
+        }
+        double[] rectangle;
+        int page, offset;
+        try {
+            // 左上角经度,左上角纬度|右下角经度,右下角纬度
+            String[] points = params.get("polygon").split("\\|");
+            String[] first = points[0].split(","), second = points[1].split(",");
+            double lng1 = Double.parseDouble(first[0]), lat1 = Double.parseDouble(first[1]);
+            double lng2 = Double.parseDouble(second[0]), lat2 = Double.parseDouble(second[1]);
+            rectangle = new double[]{Math.min(lng1, lng2), Math.min(lat1, lat2), Math.max(lng1, lng2), Math.max(lat1, lat2)};
+            page = Integer.parseInt(params.getOrDefault("page", "1"));
+            offset = Integer.parseInt(params.getOrDefault("offset", "20"));
+        } catch (RuntimeException e) {
+            return error(NoTryAgainErrorCode.INVALID_PARAMS.code(), NoTryAgainErrorCode.INVALID_PARAMS.name());
+        }
+        boolean all = "all".equals(params.get("extensions"));
+        List<Integer> matched = field.query(rectangle[0], rectangle[1], rectangle[2], rectangle[3]);
+        JsonArray pois = new JsonArray();
+        int from = Math.max(0, (page - 1) * offset);
+        for (int i = from; i < Math.min(matched.size(), from + offset); i++) {
+            pois.add(poi(matched.get(i), all));
+        }
+        poisServed.addAndGet(pois.size());
+        JsonObject response = ok();
+        response.addProperty("count", String.valueOf(matched.size()));
+        response.add("pois", pois);
+        return response;
+    }
+
+    private JsonObject poi(int i, boolean all) {
+        JsonObject poi = new JsonObject();
+        poi.addProperty("id", "B0MOCK" + i);
+        poi.addProperty("name", "模拟POI" + i);
+        poi.addProperty("type", "餐饮服务;中餐厅;中餐厅");
+        poi.addProperty("typecode", "050100");
+        poi.add("biz_type", new JsonArray());
+        poi.addProperty("address", "模拟路" + (i % 1000) + "号");
+        poi.addProperty("location", String.format(Locale.ROOT, "%.6f,%.6f", field.lng(i), field.lat(i)));
+        poi.addProperty("tel", "");
+        poi.addProperty("pname", field.adName());
+        poi.addProperty("cityname", field.adName());
+        poi.addProperty("adname", field.adName());
+        if (all) {
+            poi.addProperty("postcode", "100000");
+            poi.addProperty("website", "");
+            poi.addProperty("email", "");
+            poi.addProperty("pcode", "110000");
+            poi.addProperty("citycode", "010");
+            poi.addProperty("adcode", "110101");
+            poi.add("photos", new JsonArray());
+        }
+        return poi;
+    }
+
+    private JsonObject geocoding(Map<String, String> params) {
+        JsonObject error = checkKey(params.get("key"));
+        if (error != null) {
+            return error;
+        }
+        String address = params.getOrDefault("address", "");
+        double[] bounds = field.bounds();
+        Random random = new Random(address.hashCode());
+        JsonObject geocode = new JsonObject();
+        geocode.addProperty("formatted_address", address);
+        geocode.addProperty("country", "中国");
+        geocode.addProperty("province", field.adName());
+        geocode.addProperty("city", field.adName());
+        geocode.addProperty("district", field.adName());
+        geocode.addProperty("adcode", "110101");
+        geocode.addProperty("location", String.format(Locale.ROOT, "%.6f,%.6f",
+                bounds[0] + random.nextDouble() * (bounds[2] - bounds[0]),
+                bounds[1] + random.nextDouble() * (bounds[3] - bounds[1])));
+        geocode.addProperty("level", "门牌号");
+        JsonArray geocodes = new JsonArray();
+        geocodes.add(geocode);
+        JsonObject response = ok();
+        response.addProperty("count", "1");
+        response.add("geocodes", geocodes);
+        return response;
+    }
+
+    /**
+     * DataV 行政区边界，任意行政区代码均返回 POI 分布范围的矩形
+     */
+    private JsonObject boundary(Map<String, String> params) {
+        double[] bounds = field.bounds();
+        JsonArray ring = new JsonArray();
+        double[][] corners = {{bounds[0], bounds[1]}, {bounds[2], bounds[1]}, {bounds[2], bounds[3]}, {bounds[0], bounds[3]}, {bounds[0], bounds[1]}};
+        for (double[] corner : corners) {
+            JsonArray coordinate = new JsonArray();
+            coordinate.add(corner[0]);
+            coordinate.add(corner[1]);
+            ring.add(coordinate);
+        }
+        JsonArray coordinates = new JsonArray();
+        coordinates.add(ring);
+        JsonObject geometry = new JsonObject();
+        geometry.addProperty("type", "Polygon");
+        geometry.add("coordinates", coordinates);
+        JsonObject properties = new JsonObject();
+        properties.addProperty("adcode", params.getOrDefault("code", ""));
+        properties.addProperty("name", field.adName());
+        JsonObject feature = new JsonObject();
+        feature.addProperty("type", "Feature");
+        feature.add("properties", properties);
+        feature.add("geometry", geometry);
+        JsonArray features = new JsonArray();
+        features.add(feature);
+        JsonObject featureCollection = new JsonObject();
+        featureCollection.addProperty("type", "FeatureCollection");
+        featureCollection.add("features", features);
+        return featureCollection;
+    }
+
+    /**
+     * 单个 key 当前一秒与当日的请求数
+     */
+    private static class KeyCounter {
+        static final int ACQUIRED = 0;
+        static final int OVER_QPS = 1;
+        static final int OVER_DAILY_QUOTA = 2;
+
+        private long second = -1;
+        private int inSecond = 0;
+        private int today = 0;
+
+        synchronized int tryAcquire(int qps, int dailyQuota) {
+            if (dailyQuota > 0 && today >= dailyQuota) {
+                return OVER_DAILY_QUOTA;
+            }
+            long now = System.currentTimeMillis() / 1000;
+            if (now != second) {
+                second = now;
+                inSecond = 0;
+            }
+            if (qps > 0 && inSecond >= qps) {
+                return OVER_QPS;
+            }
+            inSecond++;
+            today++;
+            return ACQUIRED;
+        }
+    }
+}
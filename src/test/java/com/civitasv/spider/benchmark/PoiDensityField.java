@@ -0,0 +1,145 @@
+package com.civitasv.spider.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试使用的合成 POI 分布
+ * <p>
+ * 在矩形范围内按密度场生成固定数量的 POI：一部分均匀分布作为背景，其余围绕若干热点呈正态分布，
+ * 模拟城市中心 POI 密集、郊区稀疏的情况，使格网切分的深度与真实任务相近；
+ * 相同的参数与随机种子总是生成相同的 POI，便于比较不同版本的性能
+ */
+public class PoiDensityField {
+    // 空间索引每个方向的格网数目
+    private static final int INDEX_SIZE = 256;
+
+    private final double left, bottom, right, top;
+    private final String adName;
+    private final double[] lngs;
+    private final double[] lats;
+    // 每个索引格网内 POI 的下标
+    private final int[][] index = new int[INDEX_SIZE * INDEX_SIZE][];
+
+    /**
+     * @param bounds          范围 [左, 下, 右, 上]，gcj02 经纬度
+     * @param adName          行政区名称，作为 POI 的省份、城市与区域名称，与模拟的 DataV 边界一致
+     * @param total           POI 总数
+     * @param hotspots        热点数目
+     * @param sigmaRatio      热点标准差与范围宽度之比，越小越集中
+     * @param backgroundRatio 均匀分布的 POI 占比
+     * @param seed            随机种子
+     */
+    public PoiDensityField(double[] bounds, String adName, int total, int hotspots,
+                           double sigmaRatio, double backgroundRatio, long seed) {
+        if (bounds.length != 4 || bounds[0] >= bounds[2] || bounds[1] >= bounds[3]
+                || total < 0 || hotspots < 0 || backgroundRatio < 0 || backgroundRatio > 1) {
+            throw new IllegalArgumentException("POI 分布参数设置有误");
+        }
+        this.left = bounds[0];
+        this.bottom = bounds[1];
+        this.right = bounds[2];
+        this.top = bounds[3];
+        this.adName = adName;
+        this.lngs = new double[total];
+        this.lats = new double[total];
+
+        Random random = new Random(seed);
+        double width = right - left, height = top - bottom;
+        double[][] centers = new double[hotspots][];
+        for (int i = 0; i < hotspots; i++) {
+            centers[i] = new double[]{left + random.nextDouble() * width, bottom + random.nextDouble() * height};
+        }
+        for (int i = 0; i < total; i++) {
+            if (hotspots == 0 || random.nextDouble() < backgroundRatio) {
+                lngs[i] = left + random.nextDouble() * width;
+                lats[i] = bottom + random.nextDouble() * height;
+            } else {
+                double[] center = centers[random.nextInt(hotspots)];
+                lngs[i] = clamp(center[0] + random.nextGaussian() * width * sigmaRatio, left, right);
+                lats[i] = clamp(center[1] + random.nextGaussian() * height * sigmaRatio, bottom, top);
+            }
+        }
+        buildIndex();
+    }
+
+    private void buildIndex() {
+        int[] counts = new int[index.length];
+        for (int i = 0; i < lngs.length; i++) {
+            counts[cell(i)]++;
+        }
+        for (int c = 0; c < index.length; c++) {
+            index[c] = new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int i = 0; i < lngs.length; i++) {
+            int c = cell(i);
+            index[c][counts[c]++] = i;
+        }
+    }
+
+    private int cell(int i) {
+        return row(lats[i]) * INDEX_SIZE + column(lngs[i]);
+    }
+
+    private int column(double lng) {
+        return (int) clamp(Math.floor((lng - left) / (right - left) * INDEX_SIZE), 0, INDEX_SIZE - 1);
+    }
+
+    private int row(double lat) {
+        return (int) clamp(Math.floor((lat - bottom) / (top - bottom) * INDEX_SIZE), 0, INDEX_SIZE - 1);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * 查询矩形内的 POI
+     *
+     * @return POI 下标，按下标升序排列，保证分页结果稳定
+     */
+    public List<Integer> query(double queryLeft, double queryBottom, double queryRight, double queryTop) {
+        List<Integer> result = new ArrayList<>();
+        if (queryRight < left || queryLeft > right || queryTop < bottom || queryBottom > top) {
+            return result;
+        }
+        int minColumn = column(queryLeft), maxColumn = column(queryRight);
+        int minRow = row(queryBottom), maxRow = row(queryTop);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minColumn; c <= maxColumn; c++) {
+                for (int i : index[r * INDEX_SIZE + c]) {
+                    if (lngs[i] >= queryLeft && lngs[i] <= queryRight && lats[i] >= queryBottom && lats[i] <= queryTop) {
+                        result.add(i);
+                    }
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    public int size() {
+        return lngs.length;
+    }
+
+    public double lng(int i) {
+        return lngs[i];
+    }
+
+    public double lat(int i) {
+        return lats[i];
+    }
+
+    public String adName() {
+        return adName;
+    }
+
+    /**
+     * 范围 [左, 下, 右, 上]
+     */
+    public double[] bounds() {
+        return new double[]{left, bottom, right, top};
+    }
+}
@@ -0,0 +1,76 @@
+package com.civitasv.spider.service.serviceImpl;
+
+import com.civitasv.spider.model.po.PoiPo;
+import com.civitasv.spider.util.MyBatisUtils;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PoiServiceImplTest {
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createDatabase() throws Exception {
+        File db = folder.newFile("poi.db");
+        MyBatisUtils.url = "jdbc:sqlite:" + db.getAbsolutePath();
+        try (Connection connection = DriverManager.getConnection(MyBatisUtils.url);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("create table poi (ID integer primary key autoincrement, JOB_ID integer, POI_ID text, " +
+                    "NAME text, TYPE text, TYPE_CODE text, BIZ_TYPE text, ADDRESS text, LOCATION text, TEL text, " +
+                    "PROVINCE_NAME text, CITY_NAME text, AD_NAME text, POST_CODE text, WEBSITE text, EMAIL text, " +
+                    "PROVINCE_CODE text, CITY_CODE text, AD_CODE text, PHOTOS text)");
+        }
+    }
+
+    @Test
+    public void resumedTaskReloadsSavedPoiIdsAcrossPages() throws SQLException {
+        saveThenResume(false);
+    }
+
+    @Test
+    public void resumedTaskReloadsSavedPoiIdsIntoBloomFilter() throws SQLException {
+        saveThenResume(true);
+    }
+
+    private void saveThenResume(boolean bloomFilter) throws SQLException {
+        PoiServiceImpl first = new PoiServiceImpl(2);
+        first.clearTable();
+        first.saveBatch(pois("B1", "B2", "B3", "B4", "B5"));
+
+        // 重启后继续任务：新的实例从非空的表中分页加载已保存的 POI_ID，每页 2 条
+        PoiServiceImpl resumed = new PoiServiceImpl(2);
+        if (bloomFilter) resumed.useBloomFilterDedup(100);
+        resumed.saveBatch(pois("B4", "B5", "B6"));
+
+        assertEquals(6, count());
+    }
+
+    private static List<PoiPo> pois(String... poiIds) {
+        List<PoiPo> poiPos = new ArrayList<>();
+        for (String poiId : poiIds) {
+            poiPos.add(PoiPo.builder().jobId(1L).poiId(poiId).name(poiId).build());
+        }
+        return poiPos;
+    }
+
+    private static int count() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(MyBatisUtils.url);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from poi")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BackoffUtilTest {
+    @Test
+    public void delayDoublesWithRetryTimes() {
+        assertEquals(250, BackoffUtil.delayMillis(500, 30_000, 0, 0));
+        assertEquals(500, BackoffUtil.delayMillis(500, 30_000, 1, 0));
+        assertEquals(1000, BackoffUtil.delayMillis(500, 30_000, 2, 0));
+    }
+
+    @Test
+    public void jitterStaysBetweenHalfAndFullDelay() {
+        assertEquals(500, BackoffUtil.delayMillis(500, 30_000, 1, 0));
+        assertEquals(1000, BackoffUtil.delayMillis(500, 30_000, 1, 0.9999));
+    }
+
+    @Test
+    public void delayIsCappedEvenForManyRetries() {
+        assertEquals(15_000, BackoffUtil.delayMillis(2000, 30_000, 5, 0));
+        // 重试次数很大时移位不会溢出
+        assertEquals(15_000, BackoffUtil.delayMillis(2000, 30_000, 100, 0));
+    }
+}
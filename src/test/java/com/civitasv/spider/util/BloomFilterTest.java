@@ -0,0 +1,41 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+    @Test
+    public void repeatedPutIsNeverReportedAsNew() {
+        BloomFilter bloomFilter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.put("B0" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(bloomFilter.put("B0" + i));
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysNearTarget() {
+        BloomFilter bloomFilter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            bloomFilter.put("saved" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (!bloomFilter.put("new" + i)) falsePositives++;
+        }
+        // 期望误判率 1%，探测时插入的新元素会使误判率略有增加
+        assertTrue("误判次数：" + falsePositives, falsePositives < 30);
+    }
+
+    @Test
+    public void clearForgetsInsertedValues() {
+        BloomFilter bloomFilter = new BloomFilter(100, 0.01);
+        bloomFilter.put("B001");
+        bloomFilter.clear();
+        assertTrue(bloomFilter.put("B001"));
+    }
+}
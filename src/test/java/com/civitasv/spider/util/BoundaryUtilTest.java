@@ -0,0 +1,82 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BoundaryUtilTest {
+    private static final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private static Polygon square(double minX, double minY, double size) {
+        return (Polygon) geometryFactory.toGeometry(new Envelope(minX, minX + size, minY, minY + size));
+    }
+
+    @Test
+    public void filledBoundaryUsesItsEnvelope() {
+        List<Double[]> tiles = BoundaryUtil.getInitialTiles(square(0, 0, 1), 4);
+        assertEquals(1, tiles.size());
+        assertArrayEquals(new Double[]{0.0, 0.0, 1.0, 1.0}, tiles.get(0));
+    }
+
+    @Test
+    public void disjointPartsUseTheirOwnEnvelopes() {
+        Geometry boundary = geometryFactory.createMultiPolygon(new Polygon[]{square(0, 0, 1), square(10, 10, 1)});
+        List<Double[]> tiles = BoundaryUtil.getInitialTiles(boundary, 4);
+        assertEquals(2, tiles.size());
+        assertArrayEquals(new Double[]{0.0, 0.0, 1.0, 1.0}, tiles.get(0));
+        assertArrayEquals(new Double[]{10.0, 10.0, 11.0, 11.0}, tiles.get(1));
+    }
+
+    @Test
+    public void sparseBoundaryKeepsOnlyIntersectingGrids() {
+        // L 形边界仅占外接矩形面积的 7/16
+        Polygon l = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(0, 0), new Coordinate(4, 0), new Coordinate(4, 1), new Coordinate(1, 1),
+                new Coordinate(1, 4), new Coordinate(0, 4), new Coordinate(0, 0)});
+        List<Double[]> tiles = BoundaryUtil.getInitialTiles(l, 4);
+        assertTrue(tiles.size() < 16);
+        for (Double[] tile : tiles) {
+            assertTrue(l.intersects(BoundaryUtil.getGeometryByBounds(tile)));
+        }
+    }
+
+    @Test
+    public void manyPartsFallBackToWholeEnvelopeGrids() {
+        // 沿海城市的大量岛屿：部分数量超过上限时不再逐个生成初始格网
+        Polygon[] islands = new Polygon[40];
+        for (int i = 0; i < islands.length; i++) {
+            islands[i] = square(i * 2, i * 2, 1);
+        }
+        Geometry boundary = geometryFactory.createMultiPolygon(islands);
+        List<Double[]> tiles = BoundaryUtil.getInitialTiles(boundary, 4);
+        assertTrue(tiles.size() <= 16);
+        Envelope whole = boundary.getEnvelopeInternal();
+        for (Double[] tile : tiles) {
+            assertTrue(whole.contains(new Envelope(tile[0], tile[2], tile[1], tile[3])));
+        }
+    }
+
+    @Test
+    public void intersectingPartEnvelopesFallBackToWholeEnvelope() {
+        // 两个部分的外接矩形相交，按部分生成会重复爬取相交区域
+        Polygon l = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(0, 0), new Coordinate(4, 0), new Coordinate(4, 4), new Coordinate(3, 4),
+                new Coordinate(3, 1), new Coordinate(0, 1), new Coordinate(0, 0)});
+        Geometry boundary = geometryFactory.createMultiPolygon(new Polygon[]{l, square(0, 3, 0.5)});
+        List<Double[]> tiles = BoundaryUtil.getInitialTiles(boundary, 4);
+        Envelope whole = boundary.getEnvelopeInternal();
+        for (Double[] tile : tiles) {
+            assertTrue(whole.contains(new Envelope(tile[0], tile[2], tile[1], tile[3])));
+            assertEquals(1.0, tile[2] - tile[0], 1e-9);
+        }
+    }
+}
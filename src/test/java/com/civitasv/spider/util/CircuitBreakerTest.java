@@ -0,0 +1,71 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+    private static final String ENDPOINT = CircuitBreaker.POI_ENDPOINT;
+
+    @Test
+    public void opensAfterConsecutiveKeyFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, TimeUnit.MINUTES.toNanos(1), TimeUnit.MINUTES.toNanos(1));
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state("keyA", ENDPOINT));
+        circuitBreaker.onResult("keyA", ENDPOINT, 10003);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state("keyA", ENDPOINT));
+        assertFalse(circuitBreaker.tryAcquire("keyA", ENDPOINT));
+        assertFalse(circuitBreaker.isAvailable("keyA", ENDPOINT));
+        // 熔断按 key 和接口区分
+        assertTrue(circuitBreaker.tryAcquire("keyB", ENDPOINT));
+        assertTrue(circuitBreaker.tryAcquire("keyA", CircuitBreaker.GEOCODING_ENDPOINT));
+    }
+
+    @Test
+    public void successResetsConsecutiveFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, TimeUnit.MINUTES.toNanos(1), TimeUnit.MINUTES.toNanos(1));
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        circuitBreaker.onResult("keyA", ENDPOINT, 10000);
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state("keyA", ENDPOINT));
+    }
+
+    @Test
+    public void throttlingAndNetworkErrorsAreNotKeyFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, TimeUnit.MINUTES.toNanos(1), TimeUnit.MINUTES.toNanos(1));
+        assertFalse(CircuitBreaker.isKeyFailure(10004));
+        assertFalse(CircuitBreaker.isKeyFailure(null));
+        circuitBreaker.onResult("keyA", ENDPOINT, 10004);
+        circuitBreaker.onResult("keyA", ENDPOINT, null);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state("keyA", ENDPOINT));
+    }
+
+    @Test
+    public void halfOpenAllowsSingleProbe() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0, 0);
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        assertTrue(circuitBreaker.tryAcquire("keyA", ENDPOINT));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state("keyA", ENDPOINT));
+        assertFalse(circuitBreaker.tryAcquire("keyA", ENDPOINT));
+        assertFalse(circuitBreaker.isAvailable("keyA", ENDPOINT));
+        // 探测请求网络异常，归还探测资格
+        circuitBreaker.onResult("keyA", ENDPOINT, null);
+        assertTrue(circuitBreaker.tryAcquire("keyA", ENDPOINT));
+        circuitBreaker.onResult("keyA", ENDPOINT, 10000);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state("keyA", ENDPOINT));
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0, TimeUnit.MINUTES.toNanos(1));
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        assertTrue(circuitBreaker.tryAcquire("keyA", ENDPOINT));
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state("keyA", ENDPOINT));
+    }
+}
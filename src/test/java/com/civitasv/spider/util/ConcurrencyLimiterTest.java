@@ -0,0 +1,80 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimiterTest {
+    @Test
+    public void tryAcquireStopsAtLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void acquireWaitsForRelease() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1);
+        limiter.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.release();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void throttleHalvesLimitOncePerCooldown() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 8, 0.5, 2);
+        assertTrue(limiter.onThrottle());
+        assertEquals(4, limiter.currentLimit());
+        // 同一时间窗口内的多个超限响应只减半一次
+        assertFalse(limiter.onThrottle());
+        assertEquals(4, limiter.currentLimit());
+    }
+
+    @Test
+    public void successesIncreaseLimitAdditivelyUpToMax() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 2, 0.5, 2);
+        limiter.onSuccess();
+        assertEquals(1, limiter.currentLimit());
+        limiter.onSuccess();
+        assertEquals(2, limiter.currentLimit());
+        limiter.onSuccess();
+        limiter.onSuccess();
+        assertEquals(2, limiter.currentLimit());
+    }
+
+    @Test
+    public void raisedLimitWakesWaiter() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 2, 0.5, 1);
+        limiter.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.onSuccess();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,60 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GridSplitUtilTest {
+    private static final Double[] SMALL = {116.0, 39.0, 116.0005, 39.0005};
+    private static final Double[] LARGE = {116.0, 39.0, 116.1, 39.1};
+
+    @Test
+    public void slightlyOverThresholdSplitsInQuarters() {
+        assertEquals(2, GridSplitUtil.splitFactor(900, 850));
+    }
+
+    @Test
+    public void splitFactorGrowsWithTheOverflowRatio() {
+        // 超出阈值 9 倍时，3×3 切分后每个子格网预计恰好达到阈值
+        assertEquals(3, GridSplitUtil.splitFactor(850 * 9, 850));
+        assertEquals(4, GridSplitUtil.splitFactor(850 * 9 + 1, 850));
+    }
+
+    @Test
+    public void splitFactorIsCappedAtFour() {
+        assertEquals(4, GridSplitUtil.splitFactor(1000, 10));
+    }
+
+    @Test
+    public void initialGridIsNeverSaturated() {
+        assertFalse(GridSplitUtil.isSaturated(950, null, SMALL));
+    }
+
+    @Test
+    public void smallGridWhoseCountStoppedDecreasingIsSaturated() {
+        assertTrue(GridSplitUtil.isSaturated(950, 950, SMALL));
+    }
+
+    @Test
+    public void largeGridWhoseCountStoppedDecreasingKeepsSplitting() {
+        assertFalse(GridSplitUtil.isSaturated(950, 950, LARGE));
+    }
+
+    @Test
+    public void smallGridWhoseCountStillDecreasesKeepsSplitting() {
+        assertFalse(GridSplitUtil.isSaturated(900, 950, SMALL));
+    }
+
+    @Test
+    public void cappedCountIsNotEvidenceOfSaturation() {
+        assertFalse(GridSplitUtil.isSaturated(GridSplitUtil.AMAP_COUNT_LIMIT, GridSplitUtil.AMAP_COUNT_LIMIT, SMALL));
+    }
+
+    @Test
+    public void gridBelowSplitFloorStopsEvenWhenCapped() {
+        Double[] tiny = {116.0, 39.0, 116.000005, 39.000005};
+        assertTrue(GridSplitUtil.isSaturated(GridSplitUtil.AMAP_COUNT_LIMIT, GridSplitUtil.AMAP_COUNT_LIMIT, tiny));
+    }
+}
@@ -0,0 +1,68 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KeyPoolTest {
+    private static final String ENDPOINT = CircuitBreaker.POI_ENDPOINT;
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(1, TimeUnit.MINUTES.toNanos(1), TimeUnit.MINUTES.toNanos(1));
+
+    @Test
+    public void selectSkipsKeysOpenedByCircuitBreaker() {
+        KeyPool keyPool = new KeyPool(Arrays.asList("keyA", "keyB", "keyC"), ENDPOINT, circuitBreaker);
+        circuitBreaker.onResult("keyA", ENDPOINT, 10001);
+        circuitBreaker.onResult("keyB", ENDPOINT, 10001);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("keyC", keyPool.select());
+        }
+        assertFalse(keyPool.isAvailable("keyA"));
+        assertTrue(keyPool.hasAvailableExcept("keyA"));
+        assertFalse(keyPool.hasAvailableExcept("keyC"));
+    }
+
+    @Test
+    public void selectPrefersKeyWithFewerRequestsInFlight() {
+        KeyPool keyPool = new KeyPool(Arrays.asList("keyA", "keyB"), ENDPOINT, circuitBreaker);
+        for (int i = 0; i < 5; i++) {
+            keyPool.begin("keyA");
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("keyB", keyPool.select());
+        }
+    }
+
+    @Test
+    public void removedKeyIsNoLongerSelected() {
+        KeyPool keyPool = new KeyPool(Arrays.asList("keyA", "keyB"), ENDPOINT, circuitBreaker);
+        assertTrue(keyPool.remove("keyA"));
+        assertFalse(keyPool.remove("keyA"));
+        assertEquals(Collections.singletonList("keyB"), keyPool.keys());
+        assertEquals("keyB", keyPool.select());
+        assertFalse(keyPool.isAvailable("keyA"));
+        assertTrue(keyPool.remove("keyB"));
+        assertTrue(keyPool.isEmpty());
+        assertNull(keyPool.select());
+    }
+
+    @Test
+    public void drainUnrecordedReturnsUsageSinceLastDrain() {
+        KeyPool keyPool = new KeyPool(Arrays.asList("keyA", "keyB"), ENDPOINT, circuitBreaker);
+        keyPool.end("keyA", keyPool.begin("keyA"), true);
+        // 被取消的请求已经发出，同样消耗额度
+        keyPool.begin("keyA");
+        keyPool.cancel("keyA");
+        Map<String, Integer> usage = keyPool.drainUnrecorded();
+        assertEquals(Collections.singletonMap("keyA", 2), usage);
+        assertTrue(keyPool.drainUnrecorded().isEmpty());
+    }
+}
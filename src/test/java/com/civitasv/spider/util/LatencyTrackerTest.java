@@ -0,0 +1,41 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyTrackerTest {
+    @Test
+    public void noPercentileBeforeMinSamples() {
+        LatencyTracker tracker = new LatencyTracker(100, 0.95, 10);
+        for (int i = 0; i < 9; i++) {
+            tracker.record(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertEquals(-1, tracker.percentileMillis());
+        tracker.record(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(50, tracker.percentileMillis());
+    }
+
+    @Test
+    public void percentileOfRecordedSamples() {
+        LatencyTracker tracker = new LatencyTracker(100, 0.95, 10);
+        for (int i = 100; i >= 1; i--) {
+            tracker.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(95, tracker.percentileMillis());
+    }
+
+    @Test
+    public void oldSamplesAreReplaced() {
+        LatencyTracker tracker = new LatencyTracker(16, 0.9, 4);
+        for (int i = 0; i < 16; i++) {
+            tracker.record(TimeUnit.MILLISECONDS.toNanos(1000));
+        }
+        for (int i = 0; i < 16; i++) {
+            tracker.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(10, tracker.percentileMillis());
+    }
+}
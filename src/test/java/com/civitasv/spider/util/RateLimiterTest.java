@@ -0,0 +1,45 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+    @Test
+    public void burstIsAvailableImmediatelyThenExhausted() {
+        RateLimiter rateLimiter = new RateLimiter(1, 3);
+        assertTrue(rateLimiter.tryAcquire("keyA"));
+        assertTrue(rateLimiter.tryAcquire("keyA"));
+        assertTrue(rateLimiter.tryAcquire("keyA"));
+        assertFalse(rateLimiter.tryAcquire("keyA"));
+    }
+
+    @Test
+    public void eachKeyHasItsOwnBucket() {
+        RateLimiter rateLimiter = new RateLimiter(1);
+        assertTrue(rateLimiter.tryAcquire("keyA"));
+        assertFalse(rateLimiter.tryAcquire("keyA"));
+        assertTrue(rateLimiter.tryAcquire("keyB"));
+    }
+
+    @Test
+    public void acquirePacesRequestsAtQps() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(20);
+        long begin = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            rateLimiter.acquire("keyA");
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        // 第一个令牌立即可用，其余 10 个每 50ms 生成一个
+        assertTrue("耗时：" + elapsedMillis, elapsedMillis >= 450);
+        assertTrue("耗时：" + elapsedMillis, elapsedMillis < 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveQps() {
+        new RateLimiter(0);
+    }
+}
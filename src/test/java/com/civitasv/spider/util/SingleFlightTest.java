@@ -0,0 +1,108 @@
+package com.civitasv.spider.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+    private final SingleFlight<String> singleFlight = new SingleFlight<>("ok"::equals);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private Supplier<CompletableFuture<String>> call(CompletableFuture<String> source) {
+        return () -> {
+            calls.incrementAndGet();
+            return source;
+        };
+    }
+
+    @Test
+    public void joinWithoutFlightReturnsNull() {
+        assertNull(singleFlight.join("a"));
+    }
+
+    @Test
+    public void followerSharesLeaderResultWithoutCalling() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> leader = singleFlight.lead("a", call(source));
+        CompletableFuture<String> follower = singleFlight.join("a");
+        assertNotNull(follower);
+        source.complete("ok");
+        assertEquals("ok", leader.join());
+        assertEquals("ok", follower.join());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void followerGetsNullWhenResultIsNotShareable() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> leader = singleFlight.lead("a", call(source));
+        CompletableFuture<String> follower = singleFlight.join("a");
+        source.complete("invalid key");
+        assertEquals("invalid key", leader.join());
+        assertNull(follower.join());
+    }
+
+    @Test
+    public void followerGetsNullWhenRequestFails() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> leader = singleFlight.lead("a", call(source));
+        CompletableFuture<String> follower = singleFlight.join("a");
+        source.completeExceptionally(new IllegalStateException());
+        assertTrue(leader.isCompletedExceptionally());
+        assertNull(follower.join());
+    }
+
+    @Test
+    public void leadAlwaysCallsAndKeepsFirstFlight() {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        singleFlight.lead("a", call(primary));
+        singleFlight.lead("a", call(hedge));
+        assertEquals(2, calls.get());
+        CompletableFuture<String> follower = singleFlight.join("a");
+        hedge.complete("ok");
+        assertFalse(follower.isDone());
+        primary.complete("ok");
+        assertEquals("ok", follower.join());
+    }
+
+    @Test
+    public void flightIsRemovedAfterCompletion() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        singleFlight.lead("a", call(source));
+        source.complete("ok");
+        assertNull(singleFlight.join("a"));
+    }
+
+    @Test
+    public void sourceIsCancelledOnlyAfterAllSubscribersCancel() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> leader = singleFlight.lead("a", call(source));
+        CompletableFuture<String> follower = singleFlight.join("a");
+        leader.cancel(true);
+        assertFalse(source.isDone());
+        follower.cancel(true);
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    public void executeCallsAgainWhenSharedResultIsNotShareable() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        singleFlight.lead("a", call(source));
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> result = singleFlight.execute("a", call(own));
+        assertEquals(1, calls.get());
+        source.complete("invalid key");
+        assertEquals(2, calls.get());
+        own.complete("ok");
+        assertEquals("ok", result.join());
+    }
+}